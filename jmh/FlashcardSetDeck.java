@@ -0,0 +1,74 @@
+import bench.Deck;
+import java.io.IOException;
+import java.util.List;
+
+// The app's FlashcardSet behind bench.Deck, for the JMH benchmarks (see there for why).
+public class FlashcardSetDeck implements Deck
+{
+    private final FlashcardSet set;
+
+    public FlashcardSetDeck(String path)
+    {
+        set = new FlashcardSet(path);
+    }
+
+    @Override
+    public int size()
+    {
+        return set.getSize();
+    }
+
+    @Override
+    public String getTerm(int index)
+    {
+        return set.getTerm(index);
+    }
+
+    @Override
+    public String getInfo(String term)
+    {
+        return set.getInfo(term);
+    }
+
+    @Override
+    public List<String> search(String query)
+    {
+        return set.searchAll(query);
+    }
+
+    @Override
+    public void shuffle(long seed)
+    {
+        set.shuffle(seed);
+    }
+
+    @Override
+    public void add(String term, String info)
+    {
+        set.add(term, info);
+    }
+
+    @Override
+    public void remove(String term)
+    {
+        set.remove(term);
+    }
+
+    @Override
+    public void setFilepath(String path)
+    {
+        set.setFilepath(path);
+    }
+
+    @Override
+    public boolean saveData()
+    {
+        return set.saveData();
+    }
+
+    @Override
+    public void writeTo(String path) throws IOException
+    {
+        set.writeTo(path);
+    }
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The reads of a loaded deck: search (substring, through the trigram index), getInfo (by
+// term) and shuffle (a new order of the whole deck). Lookups cycle through terms and queries
+// sampled across the deck, so no single card stays in the cache.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class CardBenchmark
+{
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int cards;
+
+    private Deck deck;
+    private String[] terms;
+    private String[] queries;
+    private int next = 0;
+    private long seed = 1;
+
+    @Setup
+    public void setUp()
+    {
+        deck = Deck.load(DeckFiles.deck(cards, "csv"));
+        terms = DeckFiles.terms(deck, 1 << 16);
+        queries = DeckFiles.queries(terms, 256);
+        deck.search(queries[0]); // the trigram index is built by the first search, not measured here
+    }
+
+    @Benchmark
+    public List<String> search()
+    {
+        return deck.search(queries[next++ & 255]);
+    }
+
+    @Benchmark
+    public String getInfo()
+    {
+        return deck.getInfo(terms[next++ % terms.length]);
+    }
+
+    @Benchmark
+    public void shuffle()
+    {
+        deck.shuffle(seed++);
+    }
+}
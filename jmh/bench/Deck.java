@@ -0,0 +1,78 @@
+package bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+// A FlashcardSet, as the benchmarks see it. JMH refuses benchmark classes in the default
+// package, where the app lives, and a named package cannot import from there; so the
+// benchmarks call the app through this interface, which FlashcardSetDeck (default package,
+// in jmh/) implements by delegating to a FlashcardSet. Each method is one FlashcardSet call.
+public interface Deck
+{
+    int size();
+
+    String getTerm(int index);
+
+    String getInfo(String term);
+
+    List<String> search(String query); // searchAll
+
+    void shuffle(long seed);
+
+    void add(String term, String info);
+
+    void remove(String term);
+
+    void setFilepath(String path);
+
+    boolean saveData();
+
+    void writeTo(String path) throws IOException;
+
+    // new FlashcardSet(path), which runs loadData
+    static Deck load(String path)
+    {
+        try
+        {
+            return (Deck) Loader.NEW.invokeExact(path);
+        }
+
+        catch (RuntimeException | Error e)
+        {
+            throw e;
+        }
+
+        catch (Throwable e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    final class Loader
+    {
+        // looked up once, so a load costs a constructor call and nothing reflective
+        private static final MethodHandle NEW;
+
+        static
+        {
+            try
+            {
+                NEW = MethodHandles.publicLookup()
+                        .findConstructor(Class.forName("FlashcardSetDeck"), MethodType.methodType(void.class, String.class))
+                        .asType(MethodType.methodType(Deck.class, String.class));
+            }
+
+            catch (ReflectiveOperationException e)
+            {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private Loader()
+        {
+        }
+    }
+}
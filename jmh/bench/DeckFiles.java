@@ -0,0 +1,130 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Generated decks for the benchmarks: "<two words> <n>,the answer that goes with card <n>",
+// the words drawn from a fixed seed, so every run and every fork benchmarks the same cards.
+// The decks are kept in the temp folder and reused by later forks and runs (the 10M-card
+// one takes a while to write); scratch() gives each trial a folder of its own to write in.
+public final class DeckFiles
+{
+    private static final String[] WORDS = {"cell", "atom", "photon", "enzyme", "vector", "matrix", "kernel",
+            "protocol", "neuron", "orbit", "tensor", "lambda", "quartz", "syntax", "binary", "galaxy"};
+    private static final Path DIR = Paths.get(System.getProperty("java.io.tmpdir"), "cognistudy-bench");
+
+    private DeckFiles()
+    {
+    }
+
+    // The deck of this many cards, as "csv", "cdeck" or "cdeckz"; written on first use.
+    public static synchronized String deck(int cards, String format)
+    {
+        try
+        {
+            Files.createDirectories(DIR);
+            Path deck = DIR.resolve("deck-" + cards + "." + format);
+            if(!Files.exists(deck))
+            {
+                Path tmp = Files.createTempFile(DIR, "deck-" + cards + "-", "." + format); // writers go by the extension
+                if(format.equals("csv"))
+                {
+                    writeCsv(tmp, cards);
+                }
+
+                else
+                {
+                    Deck.load(deck(cards, "csv")).writeTo(tmp.toString());
+                }
+                Files.move(tmp, deck, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return deck.toString();
+        }
+
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(Path path, int cards) throws IOException
+    {
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8))
+        {
+            for(int i = 0; i < cards; i++)
+            {
+                writer.write(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i
+                        + ",the answer that goes with card " + i + "\n");
+            }
+        }
+    }
+
+    // A copy of the deck in a new folder, for benchmarks that write to it (saves, the journal).
+    public static String scratch(int cards, String format)
+    {
+        try
+        {
+            Path dir = Files.createTempDirectory("cognistudy-bench-scratch");
+            Path copy = dir.resolve("deck." + format);
+            Files.copy(Paths.get(deck(cards, format)), copy);
+            return copy.toString();
+        }
+
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void delete(String scratch) // the folder scratch() made, with everything in it
+    {
+        try (Stream<Path> files = Files.walk(Paths.get(scratch).getParent()))
+        {
+            for(Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+            {
+                Files.deleteIfExists(p);
+            }
+        }
+
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Terms of the deck, sampled across it, to look up.
+    public static String[] terms(Deck deck, int count)
+    {
+        Random random = new Random(42);
+        String[] terms = new String[Math.min(count, deck.size())];
+        for(int i = 0; i < terms.length; i++)
+        {
+            terms[i] = deck.getTerm(random.nextInt(deck.size()));
+        }
+        return terms;
+    }
+
+    // Substrings of those terms, 3 to 8 characters, as someone types into the search box.
+    public static String[] queries(String[] terms, int count)
+    {
+        Random random = new Random(43);
+        String[] queries = new String[count];
+        for(int i = 0; i < count; i++)
+        {
+            String t = terms[random.nextInt(terms.length)];
+            int from = random.nextInt(Math.max(1, t.length() - 5));
+            queries[i] = t.substring(from, Math.min(t.length(), from + 3 + random.nextInt(6)));
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// add and remove, journaled as edits from the GUI are. Both change the deck, so every
+// iteration is one batch of BATCH calls on a deck brought back to its original cards first
+// (plus, for remove, BATCH cards to take out). The score is the time of a batch in
+// microseconds, which is nanoseconds per card.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = EditBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = EditBenchmark.BATCH)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class EditBenchmark
+{
+    static final int BATCH = 1000;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int cards;
+
+    private String path;
+    private Deck deck;
+    private final String[] added = new String[BATCH];
+    private final String[] removable = new String[BATCH];
+    private int adds = 0; // calls to add in this iteration
+    private int removes = 0;
+    private int round = 0;
+
+    @Setup(Level.Trial)
+    public void load()
+    {
+        path = DeckFiles.scratch(cards, "csv");
+        deck = Deck.load(path);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        for(int i = 0; i < adds; i++)
+        {
+            deck.remove(added[i]);
+        }
+
+        for(int i = removes; i < BATCH && round > 0; i++)
+        {
+            deck.remove(removable[i]);
+        }
+
+        round++;
+        for(int i = 0; i < BATCH; i++)
+        {
+            added[i] = "added card " + round + " " + i;
+            removable[i] = "removable card " + round + " " + i;
+            deck.add(removable[i], "the answer that goes with it");
+        }
+        adds = 0;
+        removes = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        deck.saveData(); // waits for a journal compaction the edits may have started
+        DeckFiles.delete(path);
+    }
+
+    @Benchmark
+    public void add()
+    {
+        deck.add(added[adds++], "the answer that goes with it");
+    }
+
+    @Benchmark
+    public void remove()
+    {
+        deck.remove(removable[removes++]);
+    }
+}
@@ -0,0 +1,44 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// loadData: a whole deck read into a new FlashcardSet, in each file format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark
+{
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int cards;
+
+    @Param({"csv", "cdeck", "cdeckz"})
+    public String format;
+
+    private String path;
+
+    @Setup
+    public void setUp()
+    {
+        path = DeckFiles.deck(cards, format);
+    }
+
+    @Benchmark
+    public Deck loadData()
+    {
+        return Deck.load(path);
+    }
+}
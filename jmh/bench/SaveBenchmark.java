@@ -0,0 +1,54 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// saveData: the whole deck written to a temporary file, forced to disk and renamed over the
+// deck, in each file format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class SaveBenchmark
+{
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int cards;
+
+    @Param({"csv", "cdeck", "cdeckz"})
+    public String format;
+
+    private String path;
+    private Deck deck;
+
+    @Setup
+    public void setUp()
+    {
+        path = DeckFiles.scratch(cards, format);
+        deck = Deck.load(path);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        DeckFiles.delete(path);
+    }
+
+    @Benchmark
+    public boolean saveData()
+    {
+        return deck.saveData();
+    }
+}
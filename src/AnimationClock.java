@@ -0,0 +1,52 @@
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// One frame timer shared by every animated component in the app. Components join when they
+// start moving and drop out once tick() reports they have settled; the timer itself only
+// runs while at least one component is animating, so an idle UI costs no wakeups at all.
+// Everything here runs on the Event Dispatch Thread.
+public final class AnimationClock {
+
+    public interface Animated {
+        // Advances one frame; returns false once there is nothing left to animate.
+        boolean tick();
+    }
+
+    private static final int FRAME_MILLIS = 16;
+
+    private static final Set<Animated> active = new LinkedHashSet<>();
+    private static final Timer timer = new Timer(FRAME_MILLIS, e -> frame());
+
+    private AnimationClock() {
+    }
+
+    public static void start(Animated animated) {
+        if (active.add(animated) && !timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    public static void stop(Animated animated) {
+        active.remove(animated);
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+
+    public static int activeCount() {
+        return active.size();
+    }
+
+    private static void frame() {
+        for (Animated animated : new ArrayList<>(active)) { // tick() may start or stop others
+            if (!animated.tick()) {
+                active.remove(animated);
+            }
+        }
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+import java.text.Normalizer;
+import java.util.Arrays;
+
+// Grades typed quiz answers against the expected term. Both sides are folded the same way:
+// Unicode NFKC, lower case, punctuation dropped (dashes and underscores count as spaces) and
+// runs of whitespace collapsed. A folded attempt that matches is CORRECT; one within a few
+// typos (edit distance, bounded by the length of the answer) is CLOSE; anything else is WRONG.
+// The distance uses Myers' bit-parallel algorithm, 64 pattern characters per machine word,
+// with a banded table for longer answers. All scratch space lives in the grader, so grading
+// ASCII answers allocates nothing; a grader is not thread-safe, so use one per thread.
+public class AnswerGrader
+{
+    public enum Grade
+    {
+        CORRECT, CLOSE, WRONG
+    }
+
+    private char[] expected = new char[64]; // folded expected answer
+    private char[] attempt = new char[64]; // folded attempt
+    private int expectedLength;
+    private int attemptLength;
+
+    private final long[] asciiMasks = new long[128]; // Myers pattern masks, by character
+    private final char[] otherChars = new char[64]; // pattern characters outside ASCII
+    private final long[] otherMasks = new long[64];
+    private int others = 0;
+
+    private int[] previous = new int[64]; // banded rows for answers longer than 64
+    private int[] current = new int[64];
+
+    // True if folding s needs Unicode normalization, which allocates; such answer keys are
+    // worth computing once with normalize() when the deck loads.
+    public static boolean needsUnicodeFolding(String s)
+    {
+        for(int i = 0; i < s.length(); i++)
+        {
+            if(s.charAt(i) >= 0x80)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String normalize(String s) // the folded form, as a string
+    {
+        String source = needsUnicodeFolding(s) ? Normalizer.normalize(s, Normalizer.Form.NFKC) : s;
+        char[] folded = new char[source.length()];
+        return new String(folded, 0, fold(source, folded));
+    }
+
+    // Typos forgiven in an answer of this folded length. Answers with digits must be exact,
+    // since 1865 and 1866 are one edit apart but not the same answer.
+    public static int allowedTypos(char[] folded, int length)
+    {
+        for(int i = 0; i < length; i++)
+        {
+            if(folded[i] >= '0' && folded[i] <= '9')
+            {
+                return 0;
+            }
+        }
+        return length <= 4 ? 0 : length <= 10 ? 1 : 2;
+    }
+
+    public Grade grade(String attemptText, String expectedText)
+    {
+        return grade(attemptText, expectedText, null);
+    }
+
+    // expectedKey is normalize(expectedText) if the caller has it, or null to fold here.
+    public Grade grade(String attemptText, String expectedText, String expectedKey)
+    {
+        long start = System.nanoTime();
+        Grade grade = compare(attemptText, expectedText, expectedKey);
+        Metrics.GRADE.since(start);
+        return grade;
+    }
+
+    private Grade compare(String attemptText, String expectedText, String expectedKey)
+    {
+        if(expectedKey != null)
+        {
+            expected = ensure(expected, expectedKey.length());
+            expectedKey.getChars(0, expectedKey.length(), expected, 0);
+            expectedLength = expectedKey.length();
+        }
+
+        else
+        {
+            foldExpected(expectedText);
+        }
+        foldAttempt(attemptText);
+
+        if(expectedLength == attemptLength && Arrays.equals(expected, 0, expectedLength, attempt, 0, attemptLength))
+        {
+            return Grade.CORRECT;
+        }
+
+        int k = allowedTypos(expected, expectedLength);
+        if(k == 0 || Math.abs(expectedLength - attemptLength) > k)
+        {
+            return Grade.WRONG;
+        }
+        return distance(k) <= k ? Grade.CLOSE : Grade.WRONG;
+    }
+
+    // Edit distance between the folded answers, or anything above k once it must exceed k.
+    public int distance(int k)
+    {
+        if(expectedLength == 0)
+        {
+            return attemptLength;
+        }
+
+        if(Math.abs(expectedLength - attemptLength) > k) // the last cell lies outside the band
+        {
+            return k + 1;
+        }
+        return expectedLength <= 64 ? myers(k) : banded(k);
+    }
+
+    private void foldExpected(String s)
+    {
+        String source = needsUnicodeFolding(s) ? Normalizer.normalize(s, Normalizer.Form.NFKC) : s;
+        expected = ensure(expected, source.length());
+        expectedLength = fold(source, expected);
+    }
+
+    private void foldAttempt(String s)
+    {
+        String source = needsUnicodeFolding(s) ? Normalizer.normalize(s, Normalizer.Form.NFKC) : s;
+        attempt = ensure(attempt, source.length());
+        attemptLength = fold(source, attempt);
+    }
+
+    private static int fold(String s, char[] into)
+    {
+        int n = 0;
+        boolean gap = false; // a separator is pending between two words
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9'))
+            {
+                // already folded
+            }
+
+            else if(c >= 'A' && c <= 'Z')
+            {
+                c = (char) (c + ('a' - 'A'));
+            }
+
+            else if(Character.isWhitespace(c) || isSeparator(c))
+            {
+                gap = n > 0;
+                continue;
+            }
+
+            else if(isPunctuation(c))
+            {
+                continue;
+            }
+
+            else
+            {
+                c = Character.toLowerCase(c);
+            }
+
+            if(gap)
+            {
+                into[n++] = ' ';
+                gap = false;
+            }
+            into[n++] = c;
+        }
+        return n;
+    }
+
+    private static boolean isSeparator(char c)
+    {
+        int type = Character.getType(c);
+        return type == Character.DASH_PUNCTUATION || type == Character.CONNECTOR_PUNCTUATION || Character.isSpaceChar(c);
+    }
+
+    private static boolean isPunctuation(char c)
+    {
+        switch(Character.getType(c))
+        {
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static char[] ensure(char[] buffer, int n) // grows only; reused across attempts
+    {
+        return buffer.length >= n ? buffer : new char[Math.max(n, buffer.length * 2)];
+    }
+
+    // Hyyro's formulation of Myers' algorithm for the distance between two whole strings:
+    // column j of the dynamic programming table is kept as vertical +1/-1 bit vectors, and the
+    // score tracks the bottom cell, so each attempt character costs a handful of word operations.
+    private int myers(int k)
+    {
+        int m = expectedLength;
+        int n = attemptLength;
+        for(int i = 0; i < m; i++)
+        {
+            setMask(expected[i], 1L << i);
+        }
+
+        long pv = -1L;
+        long mv = 0;
+        long high = 1L << (m - 1);
+        int score = m;
+
+        for(int j = 0; j < n; j++)
+        {
+            long eq = mask(attempt[j]);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+
+            if((ph & high) != 0)
+            {
+                score++;
+            }
+
+            else if((mh & high) != 0)
+            {
+                score--;
+            }
+
+            ph = (ph << 1) | 1; // the top row of the table grows by one per column
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+
+            if(score - (n - j - 1) > k) // cannot come back under k in the columns left
+            {
+                score = k + 1;
+                break;
+            }
+        }
+
+        clearMasks();
+        return score;
+    }
+
+    private void setMask(char c, long bit)
+    {
+        if(c < 128)
+        {
+            asciiMasks[c] |= bit;
+            return;
+        }
+
+        for(int i = 0; i < others; i++)
+        {
+            if(otherChars[i] == c)
+            {
+                otherMasks[i] |= bit;
+                return;
+            }
+        }
+        otherChars[others] = c;
+        otherMasks[others++] = bit;
+    }
+
+    private long mask(char c)
+    {
+        if(c < 128)
+        {
+            return asciiMasks[c];
+        }
+
+        for(int i = 0; i < others; i++)
+        {
+            if(otherChars[i] == c)
+            {
+                return otherMasks[i];
+            }
+        }
+        return 0;
+    }
+
+    private void clearMasks()
+    {
+        for(int i = 0; i < expectedLength; i++)
+        {
+            if(expected[i] < 128)
+            {
+                asciiMasks[expected[i]] = 0;
+            }
+        }
+        others = 0;
+    }
+
+    // Ukkonen's band: only cells within k of the diagonal can stay at or under k.
+    private int banded(int k)
+    {
+        int m = expectedLength;
+        int n = attemptLength;
+        if(previous.length <= n)
+        {
+            previous = new int[Math.max(n + 1, previous.length * 2)];
+            current = new int[previous.length];
+        }
+
+        int over = k + 1;
+        for(int j = 0; j <= n; j++)
+        {
+            previous[j] = j <= k ? j : over;
+        }
+
+        for(int i = 1; i <= m; i++)
+        {
+            int from = Math.max(1, i - k);
+            int to = Math.min(n, i + k);
+            current[0] = i <= k ? i : over;
+            if(from > 1)
+            {
+                current[from - 1] = over;
+            }
+
+            int best = current[0];
+            for(int j = from; j <= to; j++)
+            {
+                int cost = expected[i - 1] == attempt[j - 1] ? 0 : 1;
+                int d = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                current[j] = Math.min(d, over);
+                best = Math.min(best, current[j]);
+            }
+            if(to < n)
+            {
+                current[to + 1] = over;
+            }
+
+            if(best > k)
+            {
+                return over;
+            }
+
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[n];
+    }
+}
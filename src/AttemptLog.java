@@ -0,0 +1,445 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Every quiz answer given on a deck, kept next to it ("Names.csv.attempts"): an append-only log of
+// fixed-size, checksummed records (card, time, grade, response time) that is never rewritten.
+// A card is known by the hash of its term (MappedCsvLoader.hash), so its history survives shuffles
+// and reloads. Accuracy and response-time percentiles per card and for the whole deck are updated
+// as attempts are recorded, with response times counted in half-octave buckets, so reading them
+// never goes back to the log. The aggregates are checkpointed ("Names.csv.attempts.stats") with the
+// log length they cover; opening a deck replays only the attempts written after the checkpoint.
+public class AttemptLog
+{
+    private static final int MAGIC = 0x43415454; // "CATT"
+    private static final int STATS_MAGIC = 0x43415453; // "CATS"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8; // magic, version
+    private static final int RECORD = 8 + 8 + 4 + 1 + 4; // card, time, millis, grade, crc
+    private static final long CHECKPOINT_BYTES = 1L << 20; // log written since the last checkpoint, at most
+
+    private final File file; // the log
+    private final File statsFile; // checkpointed aggregates
+    private DataOutputStream out; // opened on the first attempt
+    private long length; // bytes in the log
+    private long checkpointed; // log bytes the stats file covers
+
+    private final HashMap<Long, Stats> cards = new HashMap<>();
+    private final Stats deck = new Stats();
+
+    // Attempts on one card, or on a whole deck.
+    public static class Stats
+    {
+        private static final int BUCKETS = 42; // bucket b: response times below about 2^((b + 1) / 2) ms, the last one open-ended
+
+        private long attempts = 0;
+        private long correct = 0; // CORRECT grades
+        private long close = 0; // CLOSE grades, right apart from spelling
+        private long totalMillis = 0;
+        private long last = 0; // epoch millis of the latest attempt
+        private final int[] histogram = new int[BUCKETS];
+
+        private void add(AnswerGrader.Grade grade, int millis, long time)
+        {
+            attempts++;
+            if(grade == AnswerGrader.Grade.CORRECT)
+            {
+                correct++;
+            }
+
+            else if(grade == AnswerGrader.Grade.CLOSE)
+            {
+                close++;
+            }
+            totalMillis += millis;
+            last = Math.max(last, time);
+            histogram[bucket(millis)]++;
+        }
+
+        private static int bucket(int millis) // 2 * floor(log2) plus one for the upper half of the octave
+        {
+            if(millis < 2)
+            {
+                return 0;
+            }
+            int log = 31 - Integer.numberOfLeadingZeros(millis);
+            int upper = (millis >>> (log - 1)) & 1; // at least 1.5 * 2^log
+            return Math.min(BUCKETS - 1, 2 * log + upper);
+        }
+
+        private static long bound(int bucket) // largest response time counted in the bucket, in ms
+        {
+            if(bucket == 0) // 0 and 1 ms
+            {
+                return 1;
+            }
+            int log = bucket / 2;
+            return bucket % 2 == 0 ? (3L << log) / 2 - 1 : (2L << log) - 1;
+        }
+
+        public long getAttempts()
+        {
+            return attempts;
+        }
+
+        public long getCorrect()
+        {
+            return correct;
+        }
+
+        public long getClose()
+        {
+            return close;
+        }
+
+        public long getWrong()
+        {
+            return attempts - correct - close;
+        }
+
+        public double getAccuracy() // share of attempts graded CORRECT or CLOSE, 0 without attempts
+        {
+            return attempts == 0 ? 0 : (double) (correct + close) / attempts;
+        }
+
+        public double getMeanMillis()
+        {
+            return attempts == 0 ? 0 : (double) totalMillis / attempts;
+        }
+
+        public long getLastAttempt()
+        {
+            return last;
+        }
+
+        // Response time below which a share q of the attempts were answered, to the bucket: never
+        // more than half an octave above the exact value.
+        public long percentileMillis(double q)
+        {
+            long rank = Math.max(1, (long) Math.ceil(q * attempts));
+            long seen = 0;
+            for(int b = 0; b < BUCKETS && attempts > 0; b++)
+            {
+                seen += histogram[b];
+                if(seen >= rank)
+                {
+                    return bound(b);
+                }
+            }
+            return 0;
+        }
+
+        private Stats copy()
+        {
+            Stats s = new Stats();
+            s.attempts = attempts;
+            s.correct = correct;
+            s.close = close;
+            s.totalMillis = totalMillis;
+            s.last = last;
+            System.arraycopy(histogram, 0, s.histogram, 0, BUCKETS);
+            return s;
+        }
+
+        private void write(DataOutputStream out) throws IOException
+        {
+            out.writeLong(attempts);
+            out.writeLong(correct);
+            out.writeLong(close);
+            out.writeLong(totalMillis);
+            out.writeLong(last);
+            for(int count : histogram)
+            {
+                out.writeInt(count);
+            }
+        }
+
+        private static Stats read(DataInputStream in) throws IOException
+        {
+            Stats s = new Stats();
+            s.attempts = in.readLong();
+            s.correct = in.readLong();
+            s.close = in.readLong();
+            s.totalMillis = in.readLong();
+            s.last = in.readLong();
+            for(int b = 0; b < BUCKETS; b++)
+            {
+                s.histogram[b] = in.readInt();
+            }
+            return s;
+        }
+    }
+
+    private AttemptLog(String deckPath)
+    {
+        this.file = new File(deckPath + ".attempts");
+        this.statsFile = new File(deckPath + ".attempts.stats");
+    }
+
+    // Opens the history of a deck: the last checkpoint, plus whatever was logged after it.
+    public static AttemptLog open(String deckPath) throws IOException
+    {
+        AttemptLog log = new AttemptLog(deckPath);
+        log.readCheckpoint();
+        log.replay();
+        return log;
+    }
+
+    // Logs one answer and folds it into the card's and the deck's aggregates.
+    public synchronized void record(String term, AnswerGrader.Grade grade, long responseMillis, long now) throws IOException
+    {
+        buffer(term, grade, responseMillis, now);
+        out.flush();
+    }
+
+    // As record, but the answer stays in the write buffer until flush(), a checkpoint or close():
+    // for a caller logging answers in batches, which flushes once per batch.
+    public synchronized void buffer(String term, AnswerGrader.Grade grade, long responseMillis, long now) throws IOException
+    {
+        long card = MappedCsvLoader.hash(term);
+        int millis = (int) Math.max(0, Math.min(Integer.MAX_VALUE, responseMillis));
+
+        if(out == null)
+        {
+            boolean fresh = length == 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !fresh)));
+            if(fresh)
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                length = HEADER;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(recordBytes(card, now, millis, grade.ordinal()));
+        out.writeLong(card);
+        out.writeLong(now);
+        out.writeInt(millis);
+        out.writeByte(grade.ordinal());
+        out.writeInt((int) crc.getValue());
+        length += RECORD;
+
+        apply(card, now, millis, grade);
+        if(length - checkpointed >= CHECKPOINT_BYTES)
+        {
+            checkpoint();
+        }
+    }
+
+    public synchronized void flush() throws IOException
+    {
+        if(out != null)
+        {
+            out.flush();
+        }
+    }
+
+    public synchronized Stats deck()
+    {
+        return deck.copy();
+    }
+
+    public synchronized Stats card(String term) // null for a card never attempted
+    {
+        Stats s = cards.get(MappedCsvLoader.hash(term));
+        return s == null ? null : s.copy();
+    }
+
+    public synchronized int cardsAttempted()
+    {
+        return cards.size();
+    }
+
+    // Writes the aggregates as of now, so the next open starts from here.
+    public synchronized void checkpoint() throws IOException
+    {
+        if(out != null)
+        {
+            out.flush();
+        }
+
+        File tmp = new File(statsFile.getPath() + ".tmp");
+        try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            snapshot.writeInt(STATS_MAGIC);
+            snapshot.writeInt(VERSION);
+            snapshot.writeLong(length);
+            deck.write(snapshot);
+            snapshot.writeInt(cards.size());
+            for(Map.Entry<Long, Stats> e : cards.entrySet())
+            {
+                snapshot.writeLong(e.getKey());
+                e.getValue().write(snapshot);
+            }
+        }
+
+        Files.move(tmp.toPath(), statsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointed = length;
+    }
+
+    public synchronized void close() throws IOException
+    {
+        if(length > checkpointed)
+        {
+            checkpoint();
+        }
+
+        if(out != null)
+        {
+            out.close();
+            out = null;
+        }
+    }
+
+    private void apply(long card, long time, int millis, AnswerGrader.Grade grade)
+    {
+        Stats s = cards.get(card);
+        if(s == null)
+        {
+            s = new Stats();
+            cards.put(card, s);
+        }
+        s.add(grade, millis, time);
+        deck.add(grade, millis, time);
+    }
+
+    // A checkpoint that does not match the log (missing, damaged, or ahead of a log that was cut
+    // back) is ignored: the aggregates are rebuilt from the whole log instead.
+    private void readCheckpoint()
+    {
+        if(!statsFile.exists())
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(statsFile))))
+        {
+            if(in.readInt() != STATS_MAGIC || in.readInt() != VERSION)
+            {
+                return;
+            }
+
+            long covered = in.readLong();
+            if(covered > file.length())
+            {
+                return;
+            }
+
+            Stats whole = Stats.read(in);
+            int n = in.readInt();
+            HashMap<Long, Stats> read = new HashMap<>();
+            for(int i = 0; i < n; i++)
+            {
+                long card = in.readLong();
+                read.put(card, Stats.read(in));
+            }
+
+            cards.putAll(read);
+            copyInto(whole, deck);
+            checkpointed = covered;
+        }
+
+        catch (IOException e) // damaged: start over from the log
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private static void copyInto(Stats from, Stats to)
+    {
+        to.attempts = from.attempts;
+        to.correct = from.correct;
+        to.close = from.close;
+        to.totalMillis = from.totalMillis;
+        to.last = from.last;
+        System.arraycopy(from.histogram, 0, to.histogram, 0, Stats.BUCKETS);
+    }
+
+    private void replay() throws IOException
+    {
+        long total = file.length();
+        if(total < HEADER) // nothing, or a header cut short before any attempt was written
+        {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+
+        long good = Math.max(HEADER, checkpointed);
+        AnswerGrader.Grade[] grades = AnswerGrader.Grade.values();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+        {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException(file + " is not an attempt log");
+            }
+            in.skipNBytes(good - HEADER);
+
+            CRC32 crc = new CRC32();
+            while(true)
+            {
+                try
+                {
+                    long card = in.readLong();
+                    long time = in.readLong();
+                    int millis = in.readInt();
+                    int grade = in.readUnsignedByte();
+
+                    crc.reset();
+                    crc.update(recordBytes(card, time, millis, grade));
+                    if((int) crc.getValue() != in.readInt() || grade >= grades.length)
+                    {
+                        break;
+                    }
+
+                    apply(card, time, millis, grades[grade]);
+                    good += RECORD;
+                }
+
+                catch (EOFException e) // torn tail
+                {
+                    break;
+                }
+            }
+        }
+
+        if(good < total)
+        {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+            {
+                raf.setLength(good);
+            }
+        }
+        length = good;
+    }
+
+    private static byte[] recordBytes(long card, long time, int millis, int grade) // the checksummed part of a record
+    {
+        byte[] b = new byte[RECORD - 4];
+        for(int i = 0; i < 8; i++)
+        {
+            b[i] = (byte) (card >>> (56 - 8 * i));
+            b[8 + i] = (byte) (time >>> (56 - 8 * i));
+        }
+
+        for(int i = 0; i < 4; i++)
+        {
+            b[16 + i] = (byte) (millis >>> (24 - 8 * i));
+        }
+        b[20] = (byte) grade;
+        return b;
+    }
+}
@@ -0,0 +1,28 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executors for work that must stay off the Swing thread. On Java 21+ every task gets its own
+// virtual thread; older runtimes fall back to a cached pool of daemon platform threads.
+public class Background
+{
+    public static ExecutorService executor(String name)
+    {
+        try
+        {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        }
+
+        catch (ReflectiveOperationException e) // no virtual threads on this runtime
+        {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Indexed binary deck (.cdeck). Layout, big-endian:
+//
+//   int  magic "CDCK"
+//   int  version
+//   int  card count n
+//   int  reserved
+//   long offsets[n + 1]   file offset of every card record, plus the end of the last one
+//   records:              int termLength, term UTF-8, int infoLength, info UTF-8
+//
+// The offset table lets a reader jump straight to card N without touching the others. Offsets and
+// lengths are checked against the file as they are read; a damaged file fails with an IOException
+// (wrapped in an UncheckedIOException by term() and info()) instead of reading past its records.
+public class BinaryDeck implements IndexedDeck
+{
+    public static final String EXTENSION = ".cdeck";
+
+    private static final int MAGIC = 0x4344434B; // "CDCK"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int SEGMENT = 1 << 30; // mapped in 1GB pieces so decks over 2GB still open
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private final int count;
+    private final byte[] eight = new byte[8];
+    private byte[] scratch = new byte[256];
+
+    private BinaryDeck(FileChannel channel) throws IOException
+    {
+        this.channel = channel;
+        this.size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT - 1) / SEGMENT)];
+        for(int i = 0; i < segments.length; i++)
+        {
+            long start = (long) i * SEGMENT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT, size - start));
+        }
+
+        if(size < HEADER || readInt(0) != MAGIC)
+        {
+            throw new IOException("Not a .cdeck file");
+        }
+
+        if(readInt(4) != VERSION)
+        {
+            throw new IOException("Unsupported .cdeck version " + readInt(4));
+        }
+
+        count = readInt(8);
+        if(count < 0 || HEADER + 8L * (count + 1) > size)
+        {
+            throw new IOException("Corrupt .cdeck header");
+        }
+
+        if(readLong(HEADER) != dataStart() || readLong(HEADER + 8L * count) > size)
+        {
+            throw new IOException("Corrupt .cdeck offset table");
+        }
+    }
+
+    public static boolean isBinary(String path)
+    {
+        return path.endsWith(EXTENSION);
+    }
+
+    public static BinaryDeck open(String path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try
+        {
+            return new BinaryDeck(channel);
+        }
+
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return count;
+    }
+
+    @Override
+    public String format()
+    {
+        return "cdeck";
+    }
+
+    @Override
+    public String term(int index)
+    {
+        long start = recordStart(index);
+        return field(start, recordEnd(index, start), index);
+    }
+
+    @Override
+    public String info(int index)
+    {
+        long start = recordStart(index);
+        long end = recordEnd(index, start);
+        return field(start + 4 + fieldLength(start, end, index), end, index);
+    }
+
+    private long dataStart()
+    {
+        return HEADER + 8L * (count + 1);
+    }
+
+    private long recordStart(int index)
+    {
+        if(index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException("card " + index + " of " + count);
+        }
+        return readLong(HEADER + 8L * index);
+    }
+
+    private long recordEnd(int index, long start) // the next record's offset, checked to lie inside the file
+    {
+        long end = readLong(HEADER + 8L * (index + 1));
+        if(start < dataStart() || end < start + 8 || end > size)
+        {
+            throw corrupt(index);
+        }
+        return end;
+    }
+
+    private int fieldLength(long position, long end, int index)
+    {
+        int length = position + 4 <= end ? readInt(position) : -1;
+        if(length < 0 || position + 4 + length > end)
+        {
+            throw corrupt(index);
+        }
+        return length;
+    }
+
+    private static UncheckedIOException corrupt(int index)
+    {
+        return new UncheckedIOException(new IOException("Corrupt .cdeck record " + index));
+    }
+
+    private String field(long position, long end, int index) // length-prefixed UTF-8 string, within the record
+    {
+        int length = fieldLength(position, end, index);
+        if(scratch.length < length)
+        {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        read(position + 4, scratch, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readInt(long position) // straight from the mapping unless it straddles two segments
+    {
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT)];
+        int offset = (int) (position % SEGMENT);
+        if(offset + 4 <= segment.limit())
+        {
+            return segment.getInt(offset);
+        }
+        read(position, eight, 4);
+        return ByteBuffer.wrap(eight).getInt(0);
+    }
+
+    private long readLong(long position)
+    {
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT)];
+        int offset = (int) (position % SEGMENT);
+        if(offset + 8 <= segment.limit())
+        {
+            return segment.getLong(offset);
+        }
+        read(position, eight, 8);
+        return ByteBuffer.wrap(eight).getLong(0);
+    }
+
+    private void read(long position, byte[] dst, int length) // copies bytes, crossing segment borders if needed
+    {
+        int done = 0;
+        while(done < length)
+        {
+            MappedByteBuffer segment = segments[(int) ((position + done) / SEGMENT)];
+            int offset = (int) ((position + done) % SEGMENT);
+            int n = Math.min(length - done, segment.limit() - offset);
+            segment.get(offset, dst, done, n);
+            done += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    public static void write(String path, List<String> terms, List<String> infos) throws IOException
+    {
+        int n = terms.size();
+        long[] offsets = new long[n + 1];
+        long dataStart = HEADER + 8L * (n + 1);
+
+        try (FileChannel out = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long position = dataStart;
+            out.position(dataStart);
+
+            for(int i = 0; i < n; i++)
+            {
+                offsets[i] = position;
+                position += put(out, buffer, terms.get(i).getBytes(StandardCharsets.UTF_8));
+                position += put(out, buffer, infos.get(i).getBytes(StandardCharsets.UTF_8));
+            }
+            offsets[n] = position;
+            drain(out, buffer);
+
+            out.position(0);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0);
+            for(long offset : offsets)
+            {
+                if(buffer.remaining() < 8)
+                {
+                    drain(out, buffer);
+                }
+                buffer.putLong(offset);
+            }
+            drain(out, buffer);
+        }
+    }
+
+    private static int put(FileChannel out, ByteBuffer buffer, byte[] field) throws IOException
+    {
+        if(buffer.remaining() < 4 + field.length)
+        {
+            drain(out, buffer);
+        }
+
+        if(buffer.remaining() < 4 + field.length) // larger than the whole buffer
+        {
+            buffer.putInt(field.length);
+            drain(out, buffer);
+            ByteBuffer big = ByteBuffer.wrap(field);
+            while(big.hasRemaining())
+            {
+                out.write(big);
+            }
+        }
+
+        else
+        {
+            buffer.putInt(field.length).put(field);
+        }
+        return 4 + field.length;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Converts between formats by extension, e.g. Cards/Names.csv -> Cards/Names.cdeck and back
+    // (or to and from Names.cdeckz). The source is read the way the CLI reads decks, so an
+    // unreadable one fails here; to is only replaced once the new file is complete.
+    public static void convert(String from, String to) throws IOException
+    {
+        FlashcardSet set = CLI.load(from);
+        set.writeTo(to);
+    }
+
+    // usage: java BinaryDeck <from.csv|from.cdeck|from.cdeckz> <to.cdeck|to.cdeckz|to.csv>
+    public static void main(String[] args)
+    {
+        if(args.length < 2)
+        {
+            System.out.println("usage: java BinaryDeck <from.csv|from.cdeck|from.cdeckz> <to.cdeck|to.cdeckz|to.csv>");
+            return;
+        }
+
+        try
+        {
+            convert(args[0], args[1]);
+        }
+
+        catch (IOException | UncheckedIOException e)
+        {
+            System.err.println("cannot convert " + args[0] + ": " + e);
+            System.exit(1);
+        }
+    }
+}
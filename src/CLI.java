@@ -1,23 +1,473 @@
-import java.util.Scanner;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+// Headless batch tool for whole deck libraries; nothing here touches Swing. Every command that
+// takes decks accepts files and folders (all .csv, .cdeck and .cdeckz files inside) and works on several
+// decks at once, one per core by default. Output is printed in argument order.
+//
+// usage: java CLI [--threads N] <command> ...
+//   import   <deck> <file.csv>...       adds the cards of the files whose terms the deck lacks
+//   convert  <format> <deck|dir>...     writes each deck next to itself as csv, cdeck or cdeckz (compressed)
+//   search   <query> <deck|dir>...      prints deck, term and info of every matching card
+//   validate <deck|dir>...              reports duplicate and empty cards and leftover journals
+//   grade    <deck> <answers.csv>       grades "term,attempt" lines: grade, term and attempt per line
+//   stats    <deck> [N]                 summarizes the deck's quiz history and lists its N hardest cards
 public class CLI
 {
-    private FlashcardSet set;
-    public CLI()
+    private static final int GRADE_BATCH = 4096; // answers per grading task
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+    private int status = 0; // 1 once anything failed or a deck has problems
+
+    private interface DeckTask<T>
+    {
+        T run(String deck) throws IOException;
+    }
+
+    public CLI(int threads)
+    {
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    // Loads a deck (and its journal) completely, reporting read errors instead of swallowing them.
+    static FlashcardSet load(String path) throws IOException
+    {
+        FlashcardSet set = FlashcardSet.streaming(path);
+        LoadStats stats = DeckReader.read(path, GRADE_BATCH, set::append);
+        set.finishLoading(stats);
+        return set;
+    }
+
+    // Files named on the command line, with folders replaced by the decks in them.
+    static List<String> decks(List<String> args)
+    {
+        List<String> decks = new ArrayList<>();
+        for(String arg : args)
+        {
+            File f = new File(arg);
+            File[] inside = f.isDirectory() ? f.listFiles((dir, name) -> name.endsWith(".csv") || IndexedDeck.isIndexed(name)) : null;
+            if(inside == null)
+            {
+                decks.add(arg);
+                continue;
+            }
+
+            java.util.Arrays.sort(inside);
+            for(File deck : inside)
+            {
+                decks.add(deck.getPath());
+            }
+        }
+        return decks;
+    }
+
+    // Runs task on every deck in parallel; results come back in deck order, null where it failed.
+    private <T> List<T> eachDeck(List<String> decks, DeckTask<T> task)
+    {
+        List<Future<T>> futures = new ArrayList<>();
+        for(String deck : decks)
+        {
+            futures.add(pool.submit(() -> task.run(deck)));
+        }
+
+        List<T> results = new ArrayList<>();
+        for(int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                results.add(futures.get(i).get());
+            }
+
+            catch (ExecutionException e)
+            {
+                fail(decks.get(i) + ": " + e.getCause());
+                results.add(null);
+            }
+
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return results;
+            }
+        }
+        return results;
+    }
+
+    private void fail(String message)
+    {
+        out.flush();
+        System.err.println(message);
+        status = 1;
+    }
+
+    private static String target(String deck, String extension) // deck with its extension swapped
+    {
+        return deck.substring(0, deck.lastIndexOf('.') < 0 ? deck.length() : deck.lastIndexOf('.')) + extension;
+    }
+
+    // True if GUI.resolveIn would open deck rather than other, its namesake in another format: an
+    // indexed deck unless the other one is newer, a CSV only if it is newer.
+    private static boolean newer(String deck, String other)
+    {
+        long modified = new File(deck).lastModified();
+        long otherModified = new File(other).lastModified();
+        return IndexedDeck.isIndexed(deck) ? modified >= otherModified : modified > otherModified;
+    }
+
+    void importCards(String deck, List<String> files) throws IOException
+    {
+        FlashcardSet set = new File(deck).exists() ? load(deck) : FlashcardSet.streaming(deck);
+        if(set.isLoading())
+        {
+            set.finishLoading(null); // a new deck: nothing to read
+        }
+
+        List<List<DeckReader.Batch>> read = eachDeck(files, file -> {
+            List<DeckReader.Batch> batches = new ArrayList<>();
+            DeckReader.read(file, GRADE_BATCH, batches::add);
+            return batches;
+        });
+
+        for(int i = 0; i < files.size(); i++)
+        {
+            if(read.get(i) == null)
+            {
+                continue;
+            }
+
+            int before = set.getSize();
+            int rows = 0;
+            for(DeckReader.Batch batch : read.get(i))
+            {
+                set.append(batch);
+                rows += batch.count;
+            }
+            out.printf("%s: %d cards, %d added, %d already in %s%n", files.get(i), rows, set.getSize() - before,
+                    rows - (set.getSize() - before), deck);
+        }
+
+        if(!set.saveData()) // appended cards are not journaled: nothing is kept unless this works
+        {
+            fail(deck + ": could not write the deck, nothing was imported");
+            return;
+        }
+        out.printf("%s: %d cards%n", deck, set.getSize());
+    }
+
+    void convert(String format, List<String> decks)
+    {
+        String extension = format.startsWith(".") ? format : "." + format;
+        if(!extension.equals(BinaryDeck.EXTENSION) && !extension.equals(CompressedDeck.EXTENSION) && !extension.equals(".csv"))
+        {
+            fail("unknown format " + format + " (csv, cdeck or cdeckz)");
+            return;
+        }
+
+        // X.csv and X.cdeckz both become X.cdeck: only the one GUI.resolveIn would open is converted
+        decks = new ArrayList<>(new LinkedHashSet<>(decks));
+        Map<String, String> source = new HashMap<>(); // target -> the deck it is converted from
+        for(String deck : decks)
+        {
+            String pick = source.get(target(deck, extension));
+            if(pick == null || newer(deck, pick))
+            {
+                source.put(target(deck, extension), deck);
+            }
+        }
+
+        List<String> written = eachDeck(decks, deck -> {
+            String to = target(deck, extension);
+            String pick = source.get(to);
+            if(!pick.equals(deck))
+            {
+                return deck + ": skipped, " + pick + " is newer";
+            }
+
+            if(to.equals(deck))
+            {
+                return deck + ": already " + format;
+            }
+
+            FlashcardSet set = load(deck);
+            set.writeTo(to);
+            return deck + " -> " + to + " (" + set.getSize() + " cards)";
+        });
+
+        for(String line : written)
+        {
+            if(line != null)
+            {
+                out.println(line);
+            }
+        }
+    }
+
+    void search(String query, List<String> decks)
+    {
+        List<List<String>> found = eachDeck(decks, deck -> {
+            FlashcardSet set = load(deck);
+            List<String> lines = new ArrayList<>();
+            for(String term : set.searchAll(query))
+            {
+                lines.add(deck + "\t" + term + "\t" + set.getInfo(term));
+            }
+            return lines;
+        });
+
+        for(List<String> lines : found)
+        {
+            if(lines != null)
+            {
+                lines.forEach(out::println);
+            }
+        }
+    }
+
+    void validate(List<String> decks)
+    {
+        List<String> reports = eachDeck(decks, deck -> {
+            HashSet<String> seen = new HashSet<>(); // DeckReader keeps every row, duplicates included
+            int[] counts = new int[4]; // rows, duplicate terms, empty terms, empty infos
+
+            DeckReader.read(deck, GRADE_BATCH, batch -> {
+                for(int i = 0; i < batch.count; i++)
+                {
+                    counts[0]++;
+                    if(batch.terms[i].isEmpty()) counts[2]++;
+                    else if(!seen.add(batch.terms[i])) counts[1]++;
+                    if(batch.infos[i].isEmpty()) counts[3]++;
+                }
+            });
+
+            List<String> problems = new ArrayList<>();
+            if(counts[1] > 0) problems.add(counts[1] + " duplicate terms");
+            if(counts[2] > 0) problems.add(counts[2] + " empty terms");
+            if(counts[3] > 0) problems.add(counts[3] + " empty answers");
+            if(counts[0] == 0) problems.add("no cards");
+            if(new File(deck + ".journal.compacting").exists()) problems.add("unfinished compaction");
+
+            String journal = new File(deck + ".journal").exists() ? ", unsaved edits in journal" : "";
+            return deck + ": " + counts[0] + " cards" + journal + (problems.isEmpty() ? ", OK" : ", " + String.join(", ", problems));
+        });
+
+        for(String report : reports)
+        {
+            if(report != null)
+            {
+                out.println(report);
+                if(!report.endsWith(", OK"))
+                {
+                    status = 1;
+                }
+            }
+        }
+    }
+
+    // Reads the answers in batches and grades each batch on the pool while the next is read; a
+    // bounded window of batches in flight keeps memory flat and the output in input order.
+    void grade(String deck, String answers) throws IOException
     {
-        Scanner scanner = new Scanner(System.in);
-        System.out.println("Flashcard101 CLI\n");
+        FlashcardSet set = load(deck);
+        ThreadLocal<AnswerGrader> graders = ThreadLocal.withInitial(AnswerGrader::new);
+        ArrayDeque<Future<String[]>> window = new ArrayDeque<>();
+        long[] totals = new long[4]; // correct, close, wrong, unknown term
+
+        DeckReader.read(answers, GRADE_BATCH, batch -> {
+            boolean[] known = new boolean[batch.count]; // looked up here: the set locks on every call, so workers would only queue for it
+            String[] keys = new String[batch.count];
+            for(int i = 0; i < batch.count; i++)
+            {
+                known[i] = set.isTerm(batch.terms[i]);
+                keys[i] = set.answerKey(batch.terms[i]);
+            }
+
+            window.add(pool.submit(() -> {
+                AnswerGrader grader = graders.get();
+                String[] lines = new String[batch.count];
+                for(int i = 0; i < batch.count; i++)
+                {
+                    String grade = known[i] ? grader.grade(batch.infos[i], batch.terms[i], keys[i]).name() : "UNKNOWN";
+                    lines[i] = grade + "\t" + batch.terms[i] + "\t" + batch.infos[i];
+                }
+                return lines;
+            }));
+
+            if(window.size() > 2 * threads)
+            {
+                printGrades(window.poll(), totals);
+            }
+        });
+
+        while(!window.isEmpty())
+        {
+            printGrades(window.poll(), totals);
+        }
 
-        set = new FlashcardSet("Cards/cards.csv");
-        set.displayTerm(0);
-        // set.remove("twinkle");
-        set.displayInfo("amreen");
-        set.saveData("Cards/cards.csv");
-        
+        long graded = totals[0] + totals[1] + totals[2] + totals[3];
+        out.printf("# %d answers: %d correct, %d close, %d wrong, %d unknown terms%n", graded, totals[0], totals[1], totals[2], totals[3]);
     }
 
-    public static void main(String[] args)
+    private void printGrades(Future<String[]> batch, long[] totals)
     {
-        new CLI();
+        try
+        {
+            for(String line : batch.get())
+            {
+                out.println(line);
+                totals[line.startsWith("CORRECT") ? 0 : line.startsWith("CLOSE") ? 1 : line.startsWith("WRONG") ? 2 : 3]++;
+            }
+        }
+
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Reads only the checkpointed aggregates and the log written since, however long the history.
+    void stats(String deck, int hardest) throws IOException
+    {
+        FlashcardSet set = load(deck);
+        AttemptLog log = AttemptLog.open(deck);
+        AttemptLog.Stats all = log.deck();
+        out.printf(Locale.ROOT, "%s: %d answers on %d of %d cards, %.1f%% right (%d close), response p50 %d ms, p90 %d ms, p99 %d ms%n",
+                deck, all.getAttempts(), log.cardsAttempted(), set.getSize(), all.getAccuracy() * 100, all.getClose(),
+                all.percentileMillis(0.5), all.percentileMillis(0.9), all.percentileMillis(0.99));
+
+        List<String> terms = new ArrayList<>();
+        List<AttemptLog.Stats> stats = new ArrayList<>();
+        for(int i = 0; i < set.getSize(); i++)
+        {
+            String term = set.getTerm(i);
+            AttemptLog.Stats s = log.card(term);
+            if(s != null)
+            {
+                terms.add(term);
+                stats.add(s);
+            }
+        }
+
+        Integer[] order = new Integer[terms.size()];
+        for(int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        java.util.Arrays.sort(order, (a, b) -> {
+            int byAccuracy = Double.compare(stats.get(a).getAccuracy(), stats.get(b).getAccuracy());
+            return byAccuracy != 0 ? byAccuracy : Long.compare(stats.get(b).getAttempts(), stats.get(a).getAttempts());
+        });
+
+        for(int i = 0; i < Math.min(hardest, order.length); i++)
+        {
+            AttemptLog.Stats s = stats.get(order[i]);
+            out.printf(Locale.ROOT, "%5.1f%%\t%d answers\tp50 %d ms\t%s%n", s.getAccuracy() * 100, s.getAttempts(),
+                    s.percentileMillis(0.5), terms.get(order[i]));
+        }
+        log.close();
+    }
+
+    int run(List<String> args) throws IOException
+    {
+        String command = args.isEmpty() ? "" : args.get(0);
+        List<String> rest = args.subList(Math.min(1, args.size()), args.size());
+
+        try
+        {
+            if(command.equals("import") && rest.size() >= 2)
+            {
+                importCards(rest.get(0), rest.subList(1, rest.size()));
+            }
+
+            else if(command.equals("convert") && rest.size() >= 2)
+            {
+                convert(rest.get(0), decks(rest.subList(1, rest.size())));
+            }
+
+            else if(command.equals("search") && rest.size() >= 2)
+            {
+                search(rest.get(0), decks(rest.subList(1, rest.size())));
+            }
+
+            else if(command.equals("validate") && rest.size() >= 1)
+            {
+                validate(decks(rest));
+            }
+
+            else if(command.equals("grade") && rest.size() == 2)
+            {
+                grade(rest.get(0), rest.get(1));
+            }
+
+            else if(command.equals("stats") && (rest.size() == 1 || rest.size() == 2))
+            {
+                stats(rest.get(0), rest.size() == 2 ? Integer.parseInt(rest.get(1)) : 10);
+            }
+
+            else
+            {
+                usage();
+                return 2;
+            }
+        }
+
+        finally
+        {
+            out.flush();
+            pool.shutdown();
+        }
+        return status;
+    }
+
+    private static void usage()
+    {
+        System.err.println("usage: java CLI [--threads N] <command> ...");
+        System.err.println("  import   <deck> <file.csv>...       add the cards of the files whose terms the deck lacks");
+        System.err.println("  convert  <format> <deck|dir>...     write each deck next to itself as csv, cdeck or cdeckz (compressed)");
+        System.err.println("  search   <query> <deck|dir>...      print deck, term and info of every matching card");
+        System.err.println("  validate <deck|dir>...              report duplicate and empty cards and leftover journals");
+        System.err.println("  grade    <deck> <answers.csv>       grade \"term,attempt\" lines: grade, term and attempt per line");
+        System.err.println("  stats    <deck> [N]                 summarize the deck's quiz history and list its N hardest cards");
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String> list = new ArrayList<>(List.of(args));
+        int threads = Runtime.getRuntime().availableProcessors();
+        if(list.size() >= 2 && list.get(0).equals("--threads"))
+        {
+            try
+            {
+                threads = Math.max(1, Integer.parseInt(list.get(1)));
+            }
+
+            catch (NumberFormatException e)
+            {
+                System.err.println("--threads needs a number, not " + list.get(1));
+                usage();
+                System.exit(2);
+            }
+            list = list.subList(2, list.size());
+        }
+
+        System.exit(new CLI(threads).run(list));
     }
 }
@@ -0,0 +1,756 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+// Ordered, columnar card storage. All terms and infos live as UTF-8 in one shared byte
+// arena; each card is a slot in parallel int arrays holding offsets and lengths into it,
+// so a card costs a few ints plus its text instead of several objects. Terms are found
+// through an open-addressing table of slot numbers (no boxed keys or map entries), and
+// a Fenwick tree counting the live slots turns "n-th card" into a slot (and back) in
+// O(log n). Strings and QA objects are only created when a caller asks for them.
+// Shuffling never moves card data: it fills a reusable int[] permutation of the slots,
+// and positions are read through it until the store is cleared.
+// The trigram index is filled lazily: slots join it at the first search after they were
+// added, so a load pays only for the text and the term table.
+// snapshot() hands out a frozen view in O(1) that shares every array with the store. The
+// arena, hashes and term lengths are only ever written past what a snapshot can see, so
+// they stay shared for good; the first write after a snapshot copies the index arrays it
+// would change in place, and an edit that would overwrite shared text appends it instead.
+public class CardStore
+{
+    private byte[] arena = new byte[1024]; // UTF-8 text of every term and info
+    private int arenaSize = 0;
+    private int garbage = 0; // arena bytes no live card points to any more
+
+    private int[] termOffset = new int[16]; // slot -> arena offset of the term, -1 once removed
+    private int[] termLength = new int[16];
+    private int[] infoOffset = new int[16];
+    private int[] infoLength = new int[16];
+    private int[] hashes = new int[16]; // slot -> hash of the term bytes
+    private int[] table = new int[32]; // open addressing, linear probing: slot + 1, 0 = empty
+    private int[] tree = new int[17]; // Fenwick tree over live slots, 1-based
+    private int slots = 0; // slots handed out, live or removed
+    private int live = 0;
+
+    private boolean shuffled = false; // positions follow order[] instead of slot order
+    private int[] order = new int[0]; // position -> slot while shuffled
+    private int[] where = new int[16]; // slot -> position while shuffled
+
+    private final TrigramIndex index; // substring search over the slots; null in a snapshot
+    private int indexed = 0; // slots [0, indexed) are in the index, the rest join it at the next search
+    private byte[] scratch = new byte[256]; // UTF-8 of the term being looked up
+    private final boolean frozen; // a snapshot: read-only, and safe to read from any thread
+    private boolean shared = false; // a snapshot still points at the index arrays
+    private boolean sharedText = false; // ... at the arena, whose text must not be overwritten
+    private boolean sharedSlots = false; // ... at hashes and termLength
+
+    public CardStore()
+    {
+        index = new TrigramIndex();
+        frozen = false;
+    }
+
+    private CardStore(CardStore from) // a frozen view of from, sharing its arrays
+    {
+        arena = from.arena;
+        arenaSize = from.arenaSize;
+        garbage = from.garbage;
+        termOffset = from.termOffset;
+        termLength = from.termLength;
+        infoOffset = from.infoOffset;
+        infoLength = from.infoLength;
+        hashes = from.hashes;
+        table = from.table;
+        tree = from.tree;
+        slots = from.slots;
+        live = from.live;
+        shuffled = from.shuffled;
+        order = from.order;
+        where = from.where;
+        index = null;
+        scratch = null;
+        frozen = true;
+    }
+
+    // Read-only view of the cards as they are now, in O(1). Later writes to this store never
+    // show through it, and it may be read from several threads at once without locking.
+    public CardStore snapshot()
+    {
+        if(frozen)
+        {
+            return this;
+        }
+
+        shared = true;
+        sharedText = true;
+        sharedSlots = true;
+        return new CardStore(this);
+    }
+
+    public int size()
+    {
+        return live;
+    }
+
+    public boolean contains(String term)
+    {
+        return find(term) >= 0;
+    }
+
+    public String info(String term)
+    {
+        int slot = find(term);
+        return slot < 0 ? null : text(infoOffset[slot], infoLength[slot]);
+    }
+
+    public boolean add(String term, String info)
+    {
+        own();
+        int length = encode(term);
+        int hash = hash(scratch, 0, length);
+        if(find(scratch, 0, length, hash) >= 0)
+        {
+            return false;
+        }
+
+        byte[] infoBytes = info.getBytes(StandardCharsets.UTF_8);
+        reserve(length + infoBytes.length);
+        System.arraycopy(scratch, 0, arena, arenaSize, length);
+        System.arraycopy(infoBytes, 0, arena, arenaSize + length, infoBytes.length);
+        insert(hash, length, infoBytes.length);
+        return true;
+    }
+
+    // Adds a card straight from the mapped CSV bytes, without making a String of it.
+    public boolean add(MappedCsvLoader.Row row)
+    {
+        own();
+        int length = row.termLength();
+        reserve(length + row.infoLength());
+        row.copyTerm(arena, arenaSize);
+
+        int hash = hash(arena, arenaSize, length);
+        if(find(arena, arenaSize, length, hash) >= 0)
+        {
+            return false; // the bytes past arenaSize are simply overwritten later
+        }
+
+        row.copyInfo(arena, arenaSize + length);
+        insert(hash, length, row.infoLength());
+        return true;
+    }
+
+    public boolean remove(String term)
+    {
+        own();
+        int slot = find(term);
+        if(slot < 0)
+        {
+            return false;
+        }
+
+        unlink(slot);
+        if(slot < indexed)
+        {
+            index.remove(slot, text(termOffset[slot], termLength[slot]));
+        }
+        if(shuffled) // the last card in the shuffled order takes the removed card's place
+        {
+            int last = order[live - 1];
+            order[where[slot]] = last;
+            where[last] = where[slot];
+        }
+        garbage += termLength[slot] + infoLength[slot];
+        termOffset[slot] = -1;
+        update(slot, -1);
+        live--;
+
+        if(slots - live > 64 && slots - live > live)
+        {
+            compact();
+        }
+        return true;
+    }
+
+    public boolean edit(String term, String info)
+    {
+        own();
+        int slot = find(term);
+        if(slot < 0)
+        {
+            return false;
+        }
+
+        byte[] infoBytes = info.getBytes(StandardCharsets.UTF_8);
+        if(infoBytes.length <= infoLength[slot] && !sharedText) // fits where the old one was
+        {
+            garbage += infoLength[slot] - infoBytes.length;
+            System.arraycopy(infoBytes, 0, arena, infoOffset[slot], infoBytes.length);
+        }
+
+        else
+        {
+            reserve(infoBytes.length); // may compact, which keeps the old info and renumbers the slots
+            slot = find(term);
+            System.arraycopy(infoBytes, 0, arena, arenaSize, infoBytes.length);
+            garbage += infoLength[slot];
+            infoOffset[slot] = arenaSize;
+            arenaSize += infoBytes.length;
+        }
+        infoLength[slot] = infoBytes.length;
+        return true;
+    }
+
+    public String term(int index)
+    {
+        int slot = slotAt(index);
+        return text(termOffset[slot], termLength[slot]);
+    }
+
+    public String info(int index)
+    {
+        int slot = slotAt(index);
+        return text(infoOffset[slot], infoLength[slot]);
+    }
+
+    public QA question(int index)
+    {
+        int slot = slotAt(index);
+        return new QA(text(termOffset[slot], termLength[slot]), text(infoOffset[slot], infoLength[slot]));
+    }
+
+    public int indexOf(String term) // position of the card, or -1
+    {
+        int slot = find(term);
+        if(slot < 0)
+        {
+            return -1;
+        }
+        return shuffled ? where[slot] : prefix(slot + 1) - 1;
+    }
+
+    public ArrayList<String> search(String query) // terms containing the query, ignoring case, in deck order
+    {
+        if(!frozen)
+        {
+            catchUpIndex();
+        }
+        int[] found = frozen ? scan(query) : index.search(query, this::slotTerm, slots);
+        ArrayList<String> result = new ArrayList<>(found.length);
+        for(int slot : found)
+        {
+            result.add(slotTerm(slot));
+        }
+        return result;
+    }
+
+    public ArrayList<String> terms() // copies in deck order, ignoring any shuffle
+    {
+        ArrayList<String> result = new ArrayList<>(live);
+        for(int slot = 0; slot < slots; slot++)
+        {
+            if(termOffset[slot] >= 0)
+            {
+                result.add(text(termOffset[slot], termLength[slot]));
+            }
+        }
+        return result;
+    }
+
+    public ArrayList<String> infos()
+    {
+        ArrayList<String> result = new ArrayList<>(live);
+        for(int slot = 0; slot < slots; slot++)
+        {
+            if(termOffset[slot] >= 0)
+            {
+                result.add(text(infoOffset[slot], infoLength[slot]));
+            }
+        }
+        return result;
+    }
+
+    public void clear()
+    {
+        own();
+        if(sharedText) // the next cards would be written over a snapshot's text
+        {
+            arena = new byte[1024];
+            sharedText = false;
+        }
+        if(sharedSlots)
+        {
+            hashes = new int[hashes.length];
+            termLength = new int[termLength.length];
+            sharedSlots = false;
+        }
+        arenaSize = 0;
+        garbage = 0;
+        Arrays.fill(table, 0);
+        Arrays.fill(tree, 0);
+        index.clear();
+        indexed = 0;
+        slots = 0;
+        live = 0;
+        shuffled = false;
+    }
+
+    // Fisher-Yates over a permutation of the live slots. Starting from deck order each time
+    // makes the result depend only on the deck and the random's state, so a seeded random
+    // replays the same order; the permutation array is reused, so reshuffling allocates nothing.
+    public void shuffle(Random random)
+    {
+        own();
+        if(order.length < live)
+        {
+            order = new int[termOffset.length];
+        }
+
+        int n = 0;
+        for(int slot = 0; slot < slots; slot++)
+        {
+            if(termOffset[slot] >= 0)
+            {
+                order[n++] = slot;
+            }
+        }
+
+        for(int i = live - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+
+        for(int i = 0; i < live; i++)
+        {
+            where[order[i]] = i;
+        }
+        shuffled = true;
+    }
+
+    public void unshuffle() // back to deck order
+    {
+        own();
+        shuffled = false;
+    }
+
+    public long memoryBytes() // rough retained size of the arrays behind the store, for cache budgets
+    {
+        long ints = 6L * termOffset.length + table.length + tree.length + order.length;
+        return arena.length + 4 * ints + (frozen ? 0 : scratch.length + index.memoryBytes());
+    }
+
+    // Before the first write after a snapshot: copies the arrays writes change in place, so the
+    // snapshot keeps its own. Snapshots themselves cannot be written.
+    private void own()
+    {
+        if(frozen)
+        {
+            throw new UnsupportedOperationException("snapshots are read-only");
+        }
+
+        if(!shared)
+        {
+            return;
+        }
+        termOffset = termOffset.clone();
+        infoOffset = infoOffset.clone();
+        infoLength = infoLength.clone();
+        table = table.clone();
+        tree = tree.clone();
+        order = order.clone();
+        where = where.clone();
+        shared = false;
+    }
+
+    private int[] scan(String query) // a snapshot has no trigram index: checks every live term
+    {
+        String q = query.toLowerCase(java.util.Locale.ROOT);
+        int[] found = new int[16];
+        int n = 0;
+        for(int slot = 0; slot < slots; slot++)
+        {
+            String term = slotTerm(slot);
+            if(term != null && term.toLowerCase(java.util.Locale.ROOT).contains(q))
+            {
+                if(n == found.length)
+                {
+                    found = Arrays.copyOf(found, n * 2);
+                }
+                found[n++] = slot;
+            }
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    private String slotTerm(int slot) // null for removed slots
+    {
+        return termOffset[slot] < 0 ? null : text(termOffset[slot], termLength[slot]);
+    }
+
+    private String text(int offset, int length)
+    {
+        return new String(arena, offset, length, StandardCharsets.UTF_8);
+    }
+
+    private void insert(int hash, int termBytes, int infoBytes)
+    {
+        if(slots == termOffset.length)
+        {
+            grow();
+        }
+
+        int slot = slots++;
+        termOffset[slot] = arenaSize;
+        termLength[slot] = termBytes;
+        infoOffset[slot] = arenaSize + termBytes;
+        infoLength[slot] = infoBytes;
+        hashes[slot] = hash;
+        arenaSize += termBytes + infoBytes;
+
+        link(slot);
+        update(slot, 1);
+        if(shuffled) // new cards join the end of the shuffled order
+        {
+            if(order.length == live)
+            {
+                order = Arrays.copyOf(order, Math.max(16, live * 2));
+            }
+            order[live] = slot;
+            where[slot] = live;
+        }
+        live++;
+    }
+
+    private void catchUpIndex() // adds the live slots added since the last search, in slot order
+    {
+        for(; indexed < slots; indexed++)
+        {
+            if(termOffset[indexed] >= 0)
+            {
+                index.add(indexed, text(termOffset[indexed], termLength[indexed]));
+            }
+        }
+    }
+
+    // --- term lookup ---
+
+    private int find(String term)
+    {
+        if(frozen) // readers on several threads cannot share the scratch buffer
+        {
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            return find(bytes, 0, bytes.length, hash(bytes, 0, bytes.length));
+        }
+
+        int length = encode(term);
+        return find(scratch, 0, length, hash(scratch, 0, length));
+    }
+
+    private int find(byte[] bytes, int offset, int length, int hash)
+    {
+        int mask = table.length - 1;
+        for(int i = hash & mask; table[i] != 0; i = (i + 1) & mask)
+        {
+            int slot = table[i] - 1;
+            if(hashes[slot] == hash && termLength[slot] == length
+                    && Arrays.equals(arena, termOffset[slot], termOffset[slot] + length, bytes, offset, offset + length))
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void link(int slot)
+    {
+        if(2 * (live + 1) > table.length) // keep the table at most half full
+        {
+            table = new int[table.length * 2];
+            for(int s = 0; s < slots; s++)
+            {
+                if(s != slot && termOffset[s] >= 0)
+                {
+                    place(s);
+                }
+            }
+        }
+        place(slot);
+    }
+
+    private void place(int slot)
+    {
+        int mask = table.length - 1;
+        int i = hashes[slot] & mask;
+        while(table[i] != 0)
+        {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private void unlink(int slot) // backward-shift deletion, so no tombstones are left behind
+    {
+        int mask = table.length - 1;
+        int i = hashes[slot] & mask;
+        while(table[i] != slot + 1)
+        {
+            i = (i + 1) & mask;
+        }
+
+        for(int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask)
+        {
+            int home = hashes[table[j] - 1] & mask;
+            if(((j - home) & mask) >= ((j - i) & mask)) // entry at j may move back into the hole
+            {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length)
+    {
+        int h = 0x811C9DC5;
+        for(int i = offset; i < offset + length; i++)
+        {
+            h = (h ^ bytes[i]) * 0x01000193; // FNV-1a
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // UTF-8 of the string into scratch, without allocating; same bytes as getBytes(UTF_8).
+    private int encode(String s)
+    {
+        if(scratch.length < s.length() * 3)
+        {
+            scratch = new byte[s.length() * 3];
+        }
+
+        int n = 0;
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if(c < 0x80)
+            {
+                scratch[n++] = (byte) c;
+            }
+
+            else if(c < 0x800)
+            {
+                scratch[n++] = (byte) (0xC0 | (c >> 6));
+                scratch[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+
+            else if(Character.isSurrogate(c))
+            {
+                if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1)))
+                {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    scratch[n++] = (byte) (0xF0 | (cp >> 18));
+                    scratch[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    scratch[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    scratch[n++] = (byte) (0x80 | (cp & 0x3F));
+                }
+
+                else
+                {
+                    scratch[n++] = '?'; // unpaired surrogate, as the JDK encoder does
+                }
+            }
+
+            else
+            {
+                scratch[n++] = (byte) (0xE0 | (c >> 12));
+                scratch[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                scratch[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return n;
+    }
+
+    // --- positions ---
+
+    private int slotAt(int index)
+    {
+        if(index < 0 || index >= live)
+        {
+            throw new IndexOutOfBoundsException("card " + index + " of " + live);
+        }
+
+        if(shuffled)
+        {
+            return order[index];
+        }
+
+        // walk down the Fenwick tree to the slot holding the (index + 1)-th live card
+        int position = 0;
+        int remaining = index + 1;
+        for(int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1)
+        {
+            int next = position + step;
+            if(next < tree.length && tree[next] < remaining)
+            {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    private int prefix(int count) // live cards among the first count slots
+    {
+        int sum = 0;
+        for(int i = count; i > 0; i -= i & -i)
+        {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void update(int slot, int delta)
+    {
+        for(int i = slot + 1; i < tree.length; i += i & -i)
+        {
+            tree[i] += delta;
+        }
+    }
+
+    private void rebuildTree() // O(n) bottom-up build
+    {
+        tree = new int[termOffset.length + 1];
+        for(int i = 1; i < tree.length; i++)
+        {
+            if(i <= slots && termOffset[i - 1] >= 0)
+            {
+                tree[i]++;
+            }
+
+            int parent = i + (i & -i);
+            if(parent < tree.length)
+            {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    // --- space management ---
+
+    private void reserve(int bytes)
+    {
+        if((long) arenaSize + bytes <= arena.length)
+        {
+            return;
+        }
+
+        if(garbage > arenaSize / 2) // mostly dead text: repack instead of growing
+        {
+            compact();
+            if((long) arenaSize + bytes <= arena.length)
+            {
+                return;
+            }
+        }
+
+        long needed = (long) arenaSize + bytes;
+        if(needed > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalStateException("Deck text exceeds 2GB");
+        }
+        arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, arena.length * 2L)));
+        sharedText = false;
+    }
+
+    private void grow()
+    {
+        int capacity = termOffset.length * 2;
+        termOffset = Arrays.copyOf(termOffset, capacity);
+        termLength = Arrays.copyOf(termLength, capacity);
+        infoOffset = Arrays.copyOf(infoOffset, capacity);
+        infoLength = Arrays.copyOf(infoLength, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        where = Arrays.copyOf(where, capacity);
+        sharedSlots = false;
+        rebuildTree();
+    }
+
+    // Packs the live cards into the first slots, keeping their order, and their text into a
+    // fresh arena.
+    private void compact()
+    {
+        int capacity = Math.max(16, termOffset.length);
+        byte[] newArena = new byte[Math.max(1024, arenaSize - garbage)];
+        int[] newTermOffset = new int[capacity];
+        int[] newTermLength = new int[capacity];
+        int[] newInfoOffset = new int[capacity];
+        int[] newInfoLength = new int[capacity];
+        int[] newHashes = new int[capacity];
+        int[] renumber = new int[slots];
+        Arrays.fill(renumber, -1);
+
+        int size = 0;
+        int i = 0;
+        for(int slot = 0; slot < slots; slot++)
+        {
+            if(termOffset[slot] < 0)
+            {
+                continue;
+            }
+
+            System.arraycopy(arena, termOffset[slot], newArena, size, termLength[slot]);
+            newTermOffset[i] = size;
+            newTermLength[i] = termLength[slot];
+            size += termLength[slot];
+            System.arraycopy(arena, infoOffset[slot], newArena, size, infoLength[slot]);
+            newInfoOffset[i] = size;
+            newInfoLength[i] = infoLength[slot];
+            size += infoLength[slot];
+            newHashes[i] = hashes[slot];
+            renumber[slot] = i++;
+        }
+
+        arena = newArena;
+        sharedText = false;
+        sharedSlots = false;
+        arenaSize = size;
+        garbage = 0;
+        termOffset = newTermOffset;
+        termLength = newTermLength;
+        infoOffset = newInfoOffset;
+        infoLength = newInfoLength;
+        hashes = newHashes;
+        slots = live;
+
+        int[] newWhere = new int[capacity];
+        if(shuffled)
+        {
+            for(int p = 0; p < live; p++)
+            {
+                order[p] = renumber[order[p]];
+                newWhere[order[p]] = p;
+            }
+        }
+        where = newWhere;
+
+        table = new int[table.length];
+        for(int slot = 0; slot < slots; slot++)
+        {
+            place(slot);
+        }
+        rebuildTree();
+        index.renumber(renumber);
+        int kept = 0; // the live slots below indexed, which keep their order at the front
+        for(int slot = 0; slot < indexed; slot++)
+        {
+            if(renumber[slot] >= 0)
+            {
+                kept++;
+            }
+        }
+        indexed = kept;
+    }
+}
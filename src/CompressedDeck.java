@@ -0,0 +1,359 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Block-compressed deck (.cdeckz), for decks whose text is large. Cards are grouped in blocks of
+// a fixed number of cards, and each block is compressed on its own (zlib Deflate), so reading any
+// card decompresses only its block. Layout, big-endian:
+//
+//   int  magic "CDKZ"
+//   int  version
+//   int  card count n
+//   int  cards per block b
+//   long blocks[ceil(n / b) + 1]   file offset of every block, plus the end of the last one
+//   blocks:                        int raw length, then the zlib stream of the block's records
+//   records:                       int termLength, term UTF-8, int infoLength, info UTF-8 (as in .cdeck)
+//
+// Cards per block is picked when the deck is written so a block holds about 32KB of text: small
+// enough that one card costs a fraction of a millisecond, large enough to compress well. The last
+// block read is kept decoded, so reading the cards in order decompresses each block once.
+public class CompressedDeck implements IndexedDeck
+{
+    public static final String EXTENSION = ".cdeckz";
+
+    private static final int MAGIC = 0x43444B5A; // "CDKZ"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int BLOCK_BYTES = 32 * 1024; // text per block, roughly
+    private static final int MAX_CARDS_PER_BLOCK = 1024;
+
+    private final FileChannel channel;
+    private final int count;
+    private final int perBlock;
+    private final long[] blocks; // block -> file offset, plus the end of the last one
+    private final Inflater inflater = new Inflater();
+
+    private int decoded = -1; // block held in raw, -1 for none yet
+    private byte[] raw = new byte[0];
+    private int[] starts = new int[0]; // card in the decoded block -> offset of its record in raw
+    private byte[] compressed = new byte[0];
+
+    private CompressedDeck(FileChannel channel) throws IOException
+    {
+        this.channel = channel;
+        long size = channel.size();
+        ByteBuffer header = read(0, (int) Math.min(HEADER, size));
+        if(size < HEADER || header.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a .cdeckz file");
+        }
+
+        if(header.getInt(4) != VERSION)
+        {
+            throw new IOException("Unsupported .cdeckz version " + header.getInt(4));
+        }
+
+        count = header.getInt(8);
+        perBlock = header.getInt(12);
+        if(count < 0 || perBlock < 1)
+        {
+            throw new IOException("Corrupt .cdeckz header");
+        }
+
+        int n = (int) ((count + (long) perBlock - 1) / perBlock);
+        if(HEADER + 8L * (n + 1) > size)
+        {
+            throw new IOException("Corrupt .cdeckz header");
+        }
+        blocks = new long[n + 1];
+        read(HEADER, 8 * (n + 1)).asLongBuffer().get(blocks);
+        if(blocks[n] > size)
+        {
+            throw new IOException("Corrupt .cdeckz block index");
+        }
+    }
+
+    public static boolean isCompressed(String path)
+    {
+        return path.endsWith(EXTENSION);
+    }
+
+    public static CompressedDeck open(String path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try
+        {
+            return new CompressedDeck(channel);
+        }
+
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return count;
+    }
+
+    @Override
+    public String format()
+    {
+        return "cdeckz";
+    }
+
+    @Override
+    public String term(int index)
+    {
+        return field(record(index));
+    }
+
+    @Override
+    public String info(int index)
+    {
+        int start = record(index);
+        return field(start + 4 + ByteBuffer.wrap(raw).getInt(start));
+    }
+
+    public int blockCount()
+    {
+        return blocks.length - 1;
+    }
+
+    private int record(int index) // offset in raw of the card's record, decoding its block if needed
+    {
+        if(index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException("card " + index + " of " + count);
+        }
+
+        int block = index / perBlock;
+        if(block != decoded)
+        {
+            try
+            {
+                decode(block);
+            }
+
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return starts[index - block * perBlock];
+    }
+
+    private void decode(int block) throws IOException
+    {
+        decoded = -1;
+        long from = blocks[block];
+        long to = blocks[block + 1];
+        if(to - from < 4 || to - from > Integer.MAX_VALUE)
+        {
+            throw new IOException("Corrupt .cdeckz block " + block);
+        }
+
+        int length = (int) (to - from);
+        if(compressed.length < length)
+        {
+            compressed = new byte[Math.max(length, compressed.length * 2)];
+        }
+        ByteBuffer in = ByteBuffer.wrap(compressed, 0, length);
+        while(in.hasRemaining())
+        {
+            if(channel.read(in, from + in.position()) < 0)
+            {
+                throw new IOException("Truncated .cdeckz block " + block);
+            }
+        }
+
+        int rawLength = ByteBuffer.wrap(compressed).getInt(0);
+        if(rawLength < 0)
+        {
+            throw new IOException("Corrupt .cdeckz block " + block);
+        }
+
+        if(raw.length < rawLength)
+        {
+            raw = new byte[Math.max(rawLength, raw.length * 2)];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 4, length - 4);
+        try
+        {
+            int done = 0;
+            while(done < rawLength && !inflater.finished())
+            {
+                int n = inflater.inflate(raw, done, rawLength - done);
+                if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                done += n;
+            }
+
+            if(done != rawLength || !inflater.finished())
+            {
+                throw new IOException("Corrupt .cdeckz block " + block);
+            }
+        }
+
+        catch (DataFormatException e) // includes a failed Adler-32 check
+        {
+            throw new IOException("Corrupt .cdeckz block " + block, e);
+        }
+
+        int cards = Math.min(perBlock, count - block * perBlock);
+        if(starts.length < cards)
+        {
+            starts = new int[perBlock];
+        }
+
+        ByteBuffer records = ByteBuffer.wrap(raw, 0, rawLength);
+        int position = 0;
+        for(int i = 0; i < cards; i++)
+        {
+            starts[i] = position;
+            for(int field = 0; field < 2; field++)
+            {
+                if(position + 4 > rawLength)
+                {
+                    throw new IOException("Corrupt .cdeckz block " + block);
+                }
+                int fieldLength = records.getInt(position);
+                if(fieldLength < 0 || fieldLength > rawLength - position - 4)
+                {
+                    throw new IOException("Corrupt .cdeckz block " + block);
+                }
+                position += 4 + fieldLength;
+            }
+        }
+        decoded = block;
+    }
+
+    private String field(int position) // length-prefixed UTF-8 string in raw
+    {
+        int length = ByteBuffer.wrap(raw).getInt(position);
+        return new String(raw, position + 4, length, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining())
+        {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+            {
+                break;
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        inflater.end();
+        channel.close();
+    }
+
+    public static void write(String path, List<String> terms, List<String> infos) throws IOException
+    {
+        int n = terms.size();
+        int perBlock = cardsPerBlock(terms, infos);
+        int blockCount = (n + perBlock - 1) / perBlock;
+        long[] offsets = new long[blockCount + 1];
+        long dataStart = HEADER + 8L * (blockCount + 1);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (FileChannel out = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_BYTES * 2);
+            DataOutputStream records = new DataOutputStream(block);
+            byte[] chunk = new byte[1 << 16];
+            long position = dataStart;
+            out.position(dataStart);
+
+            for(int b = 0; b < blockCount; b++)
+            {
+                block.reset();
+                for(int i = b * perBlock; i < Math.min(n, (b + 1) * perBlock); i++)
+                {
+                    byte[] term = terms.get(i).getBytes(StandardCharsets.UTF_8);
+                    byte[] info = infos.get(i).getBytes(StandardCharsets.UTF_8);
+                    records.writeInt(term.length);
+                    records.write(term);
+                    records.writeInt(info.length);
+                    records.write(info);
+                }
+
+                offsets[b] = position;
+                position += drain(out, ByteBuffer.allocate(4).putInt(0, block.size()));
+
+                deflater.reset();
+                deflater.setInput(block.toByteArray());
+                deflater.finish();
+                while(!deflater.finished())
+                {
+                    int length = deflater.deflate(chunk);
+                    position += drain(out, ByteBuffer.wrap(chunk, 0, length));
+                }
+            }
+            offsets[blockCount] = position;
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(perBlock);
+            for(long offset : offsets)
+            {
+                header.putLong(offset);
+            }
+            header.flip();
+            out.position(0);
+            drain(out, header);
+        }
+
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    // Enough cards to fill BLOCK_BYTES at the deck's average card size (counted in chars, which
+    // is close enough to UTF-8 bytes for this).
+    private static int cardsPerBlock(List<String> terms, List<String> infos)
+    {
+        long chars = 0;
+        for(int i = 0; i < terms.size(); i++)
+        {
+            chars += 8 + terms.get(i).length() + infos.get(i).length();
+        }
+
+        long average = Math.max(1, chars / Math.max(1, terms.size()));
+        return (int) Math.max(1, Math.min(MAX_CARDS_PER_BLOCK, BLOCK_BYTES / average));
+    }
+
+    private static int drain(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.remaining();
+        while(buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,186 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+// Table of every card in a deck, for decks far too big to click through one card at a time.
+// The model is lazy: JTable only asks for the rows it paints, and those are read from a
+// snapshot of the deck's store on demand, through a small cache of recently painted rows, so
+// scrolling a deck of millions costs the visible rows and memory stays flat. Rows follow the
+// deck's current order; double-clicking one opens that card in the card view. The filter box
+// narrows the table to the terms containing its text, searched off the EDT.
+public class DeckBrowser extends JFrame {
+    private static final ExecutorService searches = Background.executor("deck-browser-search");
+
+    private final FlashcardSet set;
+    private final DeckTableModel model = new DeckTableModel();
+    private final JLabel status = new JLabel(" ");
+    private final Timer refresh;
+    private Future<?> search; // running filter search, if any
+    private String filter = "";
+
+    // Rows of the table: every card of a snapshot in order, or the terms a filter matched.
+    static class DeckTableModel extends AbstractTableModel {
+        private static final int CACHE = 512; // rows kept decoded, about a few screens' worth
+        private static final String[] COLUMNS = {"#", "Term", "Answer"};
+
+        private FlashcardSet.Snapshot deck;
+        private List<String> matches; // null when not filtered
+
+        // direct-mapped by row: painting asks for every cell of a row, and repaints ask again
+        private final int[] cachedRow = new int[CACHE];
+        private final String[] cachedTerm = new String[CACHE];
+        private final String[] cachedInfo = new String[CACHE];
+
+        DeckTableModel() {
+            java.util.Arrays.fill(cachedRow, -1);
+        }
+
+        void show(FlashcardSet.Snapshot deck, List<String> matches) {
+            this.deck = deck;
+            this.matches = matches;
+            java.util.Arrays.fill(cachedRow, -1);
+            fireTableDataChanged();
+        }
+
+        FlashcardSet.Snapshot deck() {
+            return deck;
+        }
+
+        // Position of the row's card in the deck, or -1 if it is gone since the filter ran.
+        int positionOf(int row) {
+            return matches == null ? row : deck.indexOf(matches.get(row));
+        }
+
+        @Override
+        public int getRowCount() {
+            if (deck == null) return 0;
+            return matches != null ? matches.size() : deck.getSize();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                int position = positionOf(row);
+                return position < 0 ? null : position + 1;
+            }
+
+            int slot = row & (CACHE - 1);
+            if (cachedRow[slot] != row) {
+                String term = matches != null ? matches.get(row) : deck.getTerm(row);
+                cachedTerm[slot] = term;
+                cachedInfo[slot] = term == null ? null : deck.getInfo(term);
+                cachedRow[slot] = row;
+            }
+            return column == 1 ? cachedTerm[slot] : cachedInfo[slot];
+        }
+    }
+
+    public DeckBrowser(FlashcardSet set, String title, IntConsumer open) {
+        super("Browse " + title);
+        this.set = set;
+
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        table.setRowHeight(24); // one fixed height: JTable never measures rows
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setPreferredWidth(70);
+        table.getColumnModel().getColumn(0).setMaxWidth(110);
+        table.getColumnModel().getColumn(1).setPreferredWidth(250);
+        table.getColumnModel().getColumn(2).setPreferredWidth(450);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0 && model.deck() == set.snapshot()) {
+                    int position = model.positionOf(row);
+                    if (position >= 0) open.accept(position);
+                }
+            }
+        });
+
+        JTextField filterField = new JTextField();
+        filterField.addActionListener(e -> filter(filterField.getText().trim()));
+        filterField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { filter(filterField.getText().trim()); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { filter(filterField.getText().trim()); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {}
+        });
+
+        JPanel top = new JPanel(new BorderLayout(8, 0));
+        top.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        top.add(new JLabel("Filter:"), BorderLayout.WEST);
+        top.add(filterField, BorderLayout.CENTER);
+        status.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(860, 600);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        // edits, loads and file merges publish a new snapshot; checking for one is a volatile read
+        refresh = new Timer(500, e -> {
+            if (model.deck() != set.snapshot()) reload();
+        });
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refresh.stop();
+                if (search != null) search.cancel(true);
+            }
+        });
+
+        reload();
+        refresh.start();
+    }
+
+    private void filter(String text) {
+        filter = text;
+        reload();
+    }
+
+    private void reload() {
+        FlashcardSet.Snapshot deck = set.snapshot();
+        if (search != null) search.cancel(true);
+
+        if (filter.isEmpty()) {
+            model.show(deck, null);
+            status.setText(deck.getSize() + " cards");
+            return;
+        }
+
+        String query = filter;
+        status.setText("Searching...");
+        search = searches.submit(() -> {
+            List<String> found = set.searchAll(query); // the trigram index lives with the set
+            SwingUtilities.invokeLater(() -> {
+                if (!query.equals(filter)) return; // a newer filter is on its way
+                model.show(set.snapshot(), found);
+                status.setText(found.size() + " of " + deck.getSize() + " cards contain \"" + query + "\"");
+            });
+        });
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Process-wide cache of loaded decks, so opening the same deck for review, a quiz and editing
+// parses it once. Entries are keyed by canonical path and remember the file's modification
+// time and length; a deck whose file changed since it was cached counts as a miss and is
+// dropped. When the estimated heap of all cached decks exceeds the budget, the least recently
+// used decks are evicted (the one just added always stays).
+// Eviction and staleness only drop the cache's own reference: every set handed out (or being
+// loaded) is also remembered weakly by path, and for as long as it is still reachable, get()
+// and open() return that same set. So a file never has two live FlashcardSets, each with its
+// own journal and compactions overwriting the other's edits. DeckWatcher keeps a live set in
+// step with its file.
+public class DeckCache
+{
+    private static final DeckCache shared = new DeckCache(Runtime.getRuntime().maxMemory() / 4);
+
+    private static class Entry
+    {
+        final FlashcardSet set;
+        final long modified;
+        final long length;
+        final long bytes;
+
+        Entry(FlashcardSet set, long modified, long length, long bytes)
+        {
+            this.set = set;
+            this.modified = modified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private final HashMap<String, WeakReference<FlashcardSet>> live = new HashMap<>(); // the one set per file in use
+    private final long budget;
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public DeckCache(long budgetBytes)
+    {
+        this.budget = budgetBytes;
+    }
+
+    public static DeckCache shared()
+    {
+        return shared;
+    }
+
+    // The cached deck for path if its file is unchanged, or the set still in use for it (which
+    // was evicted, or whose file was rewritten since) once it has finished loading; else null.
+    public synchronized FlashcardSet get(String path)
+    {
+        String key = key(path);
+        Entry entry = entries.get(key);
+        File file = new File(path);
+
+        if(entry != null && entry.modified == file.lastModified() && entry.length == file.length())
+        {
+            hits++;
+            return entry.set;
+        }
+
+        if(entry != null) // stale: the file was rewritten since
+        {
+            entries.remove(key);
+            bytes -= entry.bytes;
+        }
+
+        FlashcardSet set = live(key);
+        if(set != null && !set.isLoading())
+        {
+            hits++;
+            put(path, set);
+            return set;
+        }
+        misses++;
+        return null;
+    }
+
+    // Claims path for a set about to be loaded: returns set, now the file's live set, or the set
+    // already live for the file (possibly still loading), which the caller should use instead.
+    public synchronized FlashcardSet open(String path, FlashcardSet set)
+    {
+        String key = key(path);
+        FlashcardSet current = live(key);
+        if(current != null)
+        {
+            return current;
+        }
+        live.put(key, new WeakReference<>(set));
+        return set;
+    }
+
+    // Gives up a claim from open(), for a load that failed or was cancelled.
+    public synchronized void release(String path, FlashcardSet set)
+    {
+        String key = key(path);
+        if(live(key) == set)
+        {
+            live.remove(key);
+        }
+
+        Entry entry = entries.get(key);
+        if(entry != null && entry.set == set)
+        {
+            entries.remove(key);
+            bytes -= entry.bytes;
+        }
+    }
+
+    private FlashcardSet live(String key)
+    {
+        WeakReference<FlashcardSet> ref = live.get(key);
+        FlashcardSet set = ref == null ? null : ref.get();
+        if(ref != null && set == null)
+        {
+            live.remove(key);
+        }
+        return set;
+    }
+
+    // Caches a fully loaded deck under the current stamp of its file.
+    public synchronized void put(String path, FlashcardSet set)
+    {
+        if(set.isLoading())
+        {
+            return;
+        }
+
+        String key = key(path);
+        File file = new File(path);
+        Entry entry = new Entry(set, file.lastModified(), file.length(), set.memoryBytes());
+        if(live(key) == null)
+        {
+            live.put(key, new WeakReference<>(set));
+        }
+
+        Entry old = entries.put(key, entry);
+        if(old != null)
+        {
+            bytes -= old.bytes;
+        }
+        bytes += entry.bytes;
+        evict();
+    }
+
+    // The deck at path was just written from set. If set is the cached copy, it still matches
+    // the file, so only the stamp moves; any other copy is stale now.
+    public synchronized void rewritten(String path, FlashcardSet set)
+    {
+        String key = key(path);
+        Entry entry = entries.get(key);
+        if(entry == null)
+        {
+            return;
+        }
+
+        if(entry.set == set)
+        {
+            File file = new File(path);
+            Entry fresh = new Entry(set, file.lastModified(), file.length(), set.memoryBytes()); // edits may have grown it
+            entries.put(key, fresh);
+            bytes += fresh.bytes - entry.bytes;
+            evict();
+        }
+
+        else
+        {
+            entries.remove(key);
+            bytes -= entry.bytes;
+        }
+    }
+
+    // The cached (or live) deck, or a new one loaded from the file and cached.
+    public synchronized FlashcardSet load(String path)
+    {
+        FlashcardSet set = get(path);
+        if(set == null)
+        {
+            set = live(key(path)); // still loading elsewhere: share it rather than open a second copy
+        }
+
+        if(set == null)
+        {
+            set = new FlashcardSet(path);
+            put(path, set);
+        }
+        return set;
+    }
+
+    public synchronized void invalidate(String path)
+    {
+        Entry entry = entries.remove(key(path));
+        if(entry != null)
+        {
+            bytes -= entry.bytes;
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void evict()
+    {
+        Iterator<Entry> it = entries.values().iterator();
+        while(bytes > budget && entries.size() > 1)
+        {
+            Entry eldest = it.next();
+            it.remove();
+            bytes -= eldest.bytes;
+            evictions++;
+        }
+    }
+
+    private static String key(String path)
+    {
+        try
+        {
+            return new File(path).getCanonicalPath();
+        }
+
+        catch (IOException e)
+        {
+            return new File(path).getAbsolutePath();
+        }
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    public synchronized int getSize() // decks cached
+    {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() // estimated heap of the cached decks
+    {
+        return bytes;
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public synchronized double hitRate()
+    {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("%d decks, %.1f of %.1f MB, %d hits, %d misses (%.0f%%), %d evictions",
+                entries.size(), bytes / 1048576.0, budget / 1048576.0, hits, misses, 100 * hitRate(), evictions);
+    }
+}
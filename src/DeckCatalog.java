@@ -0,0 +1,425 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32C;
+
+// Index of every deck under the deck folders (Cards/ and friends, subfolders included), so the
+// GUI can list and find decks without probing the disk. Folders are scanned in parallel on the
+// common fork-join pool. For each deck it records the card rows, file size and modification
+// time, a CRC32C of the contents and the first few terms. The result is saved per folder in
+// ".catalog"; on the next scan, files whose size and modification time are unchanged reuse
+// their saved entry instead of being read again.
+public class DeckCatalog
+{
+    public static final String INDEX = ".catalog";
+    private static final int MAGIC = 0x43434154; // "CCAT"
+    private static final int VERSION = 1;
+    private static final int FIRST_TERMS = 3;
+    private static final int FILES_PER_TASK = 8; // below this a task scans its files itself
+
+    public static class Entry
+    {
+        public final String name; // path below the folder, without extension ("Biology/Cells")
+        public final String path;
+        public final long size;
+        public final long modified;
+        public final int cards; // rows in the file, before duplicates are dropped
+        public final long checksum;
+        public final List<String> firstTerms;
+
+        Entry(String name, String path, long size, long modified, int cards, long checksum, List<String> firstTerms)
+        {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.cards = cards;
+            this.checksum = checksum;
+            this.firstTerms = firstTerms;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + " (" + cards + " cards)";
+        }
+    }
+
+    private final List<File> roots;
+    private volatile List<Entry> entries = List.of(); // replaced as a whole by every scan
+    private volatile Map<String, Entry> decks = Map.of(); // name -> the file find() picks, by name
+    private volatile int reused = 0; // entries taken from the saved index by the last scan
+
+    public DeckCatalog(List<File> roots)
+    {
+        this.roots = roots;
+    }
+
+    public List<Entry> entries()
+    {
+        return entries;
+    }
+
+    public int reusedLastScan()
+    {
+        return reused;
+    }
+
+    // Rescans every folder and saves their indexes; safe to call from a background thread.
+    public List<Entry> scan()
+    {
+        List<Entry> all = new ArrayList<>();
+        int kept = 0;
+
+        for(File root : roots)
+        {
+            if(!root.isDirectory())
+            {
+                continue;
+            }
+
+            Map<String, Entry> saved = readIndex(root);
+            List<Entry> found = ForkJoinPool.commonPool().invoke(new FolderTask(root, root, saved));
+            found.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+
+            int unchanged = 0;
+            for(Entry e : found)
+            {
+                if(saved.get(e.name + extension(e.path)) == e)
+                {
+                    unchanged++;
+                }
+            }
+            kept += unchanged;
+
+            if(unchanged != found.size() || saved.size() != found.size())
+            {
+                writeIndex(root, found);
+            }
+            all.addAll(found);
+        }
+
+        Map<String, Entry> picks = new java.util.LinkedHashMap<>();
+        for(Entry e : all)
+        {
+            Entry other = picks.get(e.name);
+            if(other == null || prefer(e, other))
+            {
+                picks.put(e.name, e);
+            }
+        }
+
+        decks = picks;
+        entries = Collections.unmodifiableList(all);
+        reused = kept;
+        return entries;
+    }
+
+    private static boolean prefer(Entry e, Entry other) // first folder wins; within it, resolveIn's rule
+    {
+        if(!new File(e.path).getParent().equals(new File(other.path).getParent()))
+        {
+            return false;
+        }
+        return IndexedDeck.isIndexed(e.path) ? e.modified >= other.modified : other.modified < e.modified;
+    }
+
+    // The deck a name refers to: the .cdeck (or .cdeckz) file unless the CSV next to it is newer, as
+    // GUI.resolveIn picks. Null if the catalog has no such deck (or it was deleted since).
+    public Entry find(String name)
+    {
+        Entry pick = decks.get(name);
+        return pick != null && new File(pick.path).exists() ? pick : null;
+    }
+
+    // Decks whose name starts with (or else contains) the prefix, ignoring case; one per name.
+    public List<Entry> matching(String prefix, int limit)
+    {
+        String p = prefix.toLowerCase(Locale.ROOT);
+        List<Entry> starts = new ArrayList<>();
+        List<Entry> contains = new ArrayList<>();
+
+        for(Entry e : decks.values())
+        {
+            String n = e.name.toLowerCase(Locale.ROOT);
+            if(n.startsWith(p)) starts.add(e);
+            else if(n.contains(p)) contains.add(e);
+        }
+
+        starts.addAll(contains);
+        return starts.size() > limit ? starts.subList(0, limit) : starts;
+    }
+
+    // Scans one folder: decks in slices of FILES_PER_TASK, subfolders as tasks of their own.
+    private static class FolderTask extends RecursiveTask<List<Entry>>
+    {
+        private final File root;
+        private final File folder;
+        private final Map<String, Entry> saved;
+
+        FolderTask(File root, File folder, Map<String, Entry> saved)
+        {
+            this.root = root;
+            this.folder = folder;
+            this.saved = saved;
+        }
+
+        @Override
+        protected List<Entry> compute()
+        {
+            File[] files = folder.listFiles();
+            if(files == null)
+            {
+                return new ArrayList<>();
+            }
+
+            List<RecursiveTask<List<Entry>>> tasks = new ArrayList<>();
+            List<File> decks = new ArrayList<>();
+            for(File f : files)
+            {
+                if(f.isDirectory())
+                {
+                    tasks.add(new FolderTask(root, f, saved));
+                }
+
+                else if(f.getName().endsWith(".csv") || IndexedDeck.isIndexed(f.getName()))
+                {
+                    decks.add(f);
+                }
+            }
+
+            for(int from = 0; from < decks.size(); from += FILES_PER_TASK)
+            {
+                tasks.add(new DecksTask(root, decks.subList(from, Math.min(decks.size(), from + FILES_PER_TASK)), saved));
+            }
+
+            List<Entry> found = new ArrayList<>();
+            for(RecursiveTask<List<Entry>> task : invokeAll(tasks))
+            {
+                found.addAll(task.join());
+            }
+            return found;
+        }
+    }
+
+    private static class DecksTask extends RecursiveTask<List<Entry>>
+    {
+        private final File root;
+        private final List<File> decks;
+        private final Map<String, Entry> saved;
+
+        DecksTask(File root, List<File> decks, Map<String, Entry> saved)
+        {
+            this.root = root;
+            this.decks = decks;
+            this.saved = saved;
+        }
+
+        @Override
+        protected List<Entry> compute()
+        {
+            List<Entry> found = new ArrayList<>();
+            for(File deck : decks)
+            {
+                String relative = root.toPath().relativize(deck.toPath()).toString().replace(File.separatorChar, '/');
+                Entry old = saved.get(relative);
+                if(old != null && old.size == deck.length() && old.modified == deck.lastModified())
+                {
+                    found.add(old);
+                    continue;
+                }
+
+                try
+                {
+                    found.add(read(deck, relative.substring(0, relative.lastIndexOf('.'))));
+                }
+
+                catch (IOException e) // unreadable deck: leave it out of the catalog
+                {
+                    e.printStackTrace();
+                }
+            }
+            return found;
+        }
+    }
+
+    private static Entry read(File deck, String name) throws IOException
+    {
+        long size = deck.length();
+        long modified = deck.lastModified();
+        List<String> first = new ArrayList<>();
+        int cards;
+
+        if(IndexedDeck.isIndexed(deck.getName()))
+        {
+            try (IndexedDeck indexed = IndexedDeck.open(deck.getPath())) // a .cdeckz only inflates its first block
+            {
+                cards = indexed.size();
+                for(int i = 0; i < Math.min(FIRST_TERMS, cards); i++)
+                {
+                    first.add(indexed.term(i));
+                }
+            }
+
+            catch (java.io.UncheckedIOException e)
+            {
+                throw e.getCause();
+            }
+        }
+
+        else
+        {
+            int[] rows = {0};
+            MappedCsvLoader.load(deck.getPath(), row -> {
+                if(rows[0]++ < FIRST_TERMS)
+                {
+                    first.add(row.term());
+                }
+            });
+            cards = rows[0];
+        }
+
+        return new Entry(name, deck.getPath(), size, modified, cards, checksum(deck), Collections.unmodifiableList(first));
+    }
+
+    private static long checksum(File file) throws IOException
+    {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            while(channel.read(buffer) > 0)
+            {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String extension(String path)
+    {
+        return path.substring(path.lastIndexOf('.'));
+    }
+
+    // Saved entries keyed by their file path below the folder; empty if there is no usable index.
+    private static Map<String, Entry> readIndex(File root)
+    {
+        Map<String, Entry> saved = new HashMap<>();
+        File index = new File(root, INDEX);
+        if(!index.exists())
+        {
+            return saved;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index))))
+        {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return saved;
+            }
+
+            int n = in.readInt();
+            for(int i = 0; i < n; i++)
+            {
+                String file = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                int cards = in.readInt();
+                long checksum = in.readLong();
+                List<String> first = new ArrayList<>();
+                for(int t = in.readInt(); t > 0; t--)
+                {
+                    first.add(in.readUTF());
+                }
+
+                String name = file.substring(0, file.lastIndexOf('.'));
+                String path = new File(root, file).getPath();
+                saved.put(file, new Entry(name, path, size, modified, cards, checksum, Collections.unmodifiableList(first)));
+            }
+        }
+
+        catch (IOException e) // damaged index: everything is read again and the index rewritten
+        {
+            saved.clear();
+        }
+        return saved;
+    }
+
+    private static void writeIndex(File root, List<Entry> found)
+    {
+        File tmp = new File(root, INDEX + ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(found.size());
+                for(Entry e : found)
+                {
+                    out.writeUTF(e.name + extension(e.path));
+                    out.writeLong(e.size);
+                    out.writeLong(e.modified);
+                    out.writeInt(e.cards);
+                    out.writeLong(e.checksum);
+                    out.writeInt(e.firstTerms.size());
+                    for(String term : e.firstTerms)
+                    {
+                        out.writeUTF(term.length() > 200 ? term.substring(0, 200) : term);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), new File(root, INDEX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        catch (IOException e) // read-only folder: the catalog still works, it is just rebuilt next time
+        {
+            tmp.delete();
+        }
+    }
+
+    // usage: java DeckCatalog [folder...]   scans (default Cards) and lists what it found
+    public static void main(String[] args)
+    {
+        List<File> roots = new ArrayList<>();
+        for(String arg : args)
+        {
+            roots.add(new File(arg));
+        }
+        if(roots.isEmpty())
+        {
+            roots.add(new File("Cards"));
+        }
+
+        DeckCatalog catalog = new DeckCatalog(roots);
+        long start = System.nanoTime();
+        List<Entry> found = catalog.scan();
+        long nanos = System.nanoTime() - start;
+
+        for(Entry e : found)
+        {
+            System.out.printf("%-30s %8d cards %10d bytes  crc %08x  %s%n", e.name + extension(e.path), e.cards, e.size, e.checksum, e.firstTerms);
+        }
+        System.out.printf("%d decks in %.1f ms, %d from the saved index%n", found.size(), nanos / 1e6, catalog.reusedLastScan());
+    }
+}
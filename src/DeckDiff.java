@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// What changed in a deck file since it was last read, row by row. A version of the file is kept
+// only as fingerprints: a table from the hash of each term to the hash of its info (hashes as
+// MappedCsvLoader.hash). Comparing a new version with them reads every row, but as bytes; only
+// rows that are new or changed are decoded into Strings, and terms whose rows are gone are
+// known by hash alone. The old fingerprints stay in the diff as the merge base, so
+// FlashcardSet.merge can tell a card edited in the app (kept) from one the file changed.
+public class DeckDiff
+{
+    // Open-addressing table from term hash to info hash, linear probing. A term hash of 0 is
+    // stored as 1 so that 0 can mark empty cells.
+    public static class Fingerprints
+    {
+        private long[] keys = new long[16];
+        private long[] values = new long[16];
+        private int size = 0;
+
+        public int size()
+        {
+            return size;
+        }
+
+        public boolean contains(long term)
+        {
+            return keys[find(term)] != 0;
+        }
+
+        public long get(long term) // the info hash, or 0 if the term is not in the table
+        {
+            int i = find(term);
+            return keys[i] != 0 ? values[i] : 0;
+        }
+
+        boolean putIfAbsent(long term, long info) // false for the second row of a duplicated term
+        {
+            int i = find(term);
+            if(keys[i] != 0)
+            {
+                return false;
+            }
+
+            keys[i] = key(term);
+            values[i] = info;
+            if(++size * 2 > keys.length)
+            {
+                grow();
+            }
+            return true;
+        }
+
+        private int find(long term) // cell holding term, or the empty cell where it would go
+        {
+            long key = key(term);
+            int mask = keys.length - 1;
+            int i = (int) (key ^ (key >>> 32)) & mask;
+            while(keys[i] != 0 && keys[i] != key)
+            {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void grow()
+        {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            for(int i = 0; i < oldKeys.length; i++)
+            {
+                if(oldKeys[i] != 0)
+                {
+                    int at = find(oldKeys[i]);
+                    keys[at] = oldKeys[i];
+                    values[at] = oldValues[i];
+                }
+            }
+        }
+
+        private static long key(long term)
+        {
+            return term == 0 ? 1 : term;
+        }
+    }
+
+    private interface RowSink
+    {
+        void row(long term, long info, MappedCsvLoader.Row row, String termText, String infoText);
+    }
+
+    public final Fingerprints base; // the version the set was last in step with
+    public final Fingerprints next = new Fingerprints(); // the version just read
+    public final Fingerprints removed = new Fingerprints(); // terms of base the file no longer has
+    public final List<String> terms = new ArrayList<>(); // rows added or changed in the file
+    public final List<String> infos = new ArrayList<>();
+
+    private DeckDiff(Fingerprints base)
+    {
+        this.base = base;
+    }
+
+    public boolean isEmpty()
+    {
+        return terms.isEmpty() && removed.size() == 0;
+    }
+
+    public int size() // rows added, changed or removed
+    {
+        return terms.size() + removed.size();
+    }
+
+    // Fingerprints of the deck file as it is now.
+    public static Fingerprints read(String path) throws IOException
+    {
+        Fingerprints prints = new Fingerprints();
+        rows(path, (term, info, row, termText, infoText) -> prints.putIfAbsent(term, info));
+        return prints;
+    }
+
+    // Compares the deck file as it is now with base.
+    public static DeckDiff between(Fingerprints base, String path) throws IOException
+    {
+        DeckDiff diff = new DeckDiff(base);
+        rows(path, (term, info, row, termText, infoText) -> {
+            if(!diff.next.putIfAbsent(term, info)) // a later duplicate: loading ignores it too
+            {
+                return;
+            }
+
+            if(!base.contains(term) || base.get(term) != info)
+            {
+                diff.terms.add(row != null ? row.term() : termText);
+                diff.infos.add(row != null ? row.info() : infoText);
+            }
+        });
+
+        for(int i = 0; i < base.keys.length; i++)
+        {
+            if(base.keys[i] != 0 && !diff.next.contains(base.keys[i]))
+            {
+                diff.removed.putIfAbsent(base.keys[i], base.values[i]);
+            }
+        }
+        return diff;
+    }
+
+    // CSV rows are hashed in the mapped file; an indexed deck decodes its cards to hash them.
+    private static void rows(String path, RowSink sink) throws IOException
+    {
+        if(IndexedDeck.isIndexed(path))
+        {
+            try (IndexedDeck deck = IndexedDeck.open(path))
+            {
+                for(int i = 0; i < deck.size(); i++)
+                {
+                    String term = deck.term(i);
+                    String info = deck.info(i);
+                    sink.row(MappedCsvLoader.hash(term), MappedCsvLoader.hash(info), null, term, info);
+                }
+            }
+
+            catch (java.io.UncheckedIOException e) // a damaged block of a .cdeckz
+            {
+                throw e.getCause();
+            }
+            return;
+        }
+
+        MappedCsvLoader.load(path, row -> sink.row(row.termHash(), row.infoHash(), row, null, null));
+    }
+}
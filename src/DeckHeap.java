@@ -0,0 +1,54 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+// Measures the retained heap of a loaded FlashcardSet, per card.
+// usage: java DeckHeap [cards] [--pause]
+// With --pause the deck stays loaded so a class histogram can be taken from another shell:
+//   jmap -histo:live <pid> | head -20
+public class DeckHeap
+{
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int cards = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 1000000;
+        boolean pause = args.length > 0 && args[args.length - 1].equals("--pause");
+
+        File deck = File.createTempFile("deck-heap", ".csv");
+        deck.deleteOnExit();
+        new File(deck.getPath() + ".journal").deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(deck)))
+        {
+            for(int i = 0; i < cards; i++)
+            {
+                writer.write("term number " + i + ",the answer that goes with card " + i + "\n");
+            }
+        }
+
+        long before = usedHeap();
+        FlashcardSet set = new FlashcardSet(deck.getPath());
+        long after = usedHeap();
+
+        System.out.printf("%d cards, file %.1f MB, heap %.1f MB, %.1f bytes/card%n", set.getSize(),
+                deck.length() / 1048576.0, (after - before) / 1048576.0, (double) (after - before) / set.getSize());
+
+        if(pause)
+        {
+            System.out.println("pid " + ManagementFactory.getRuntimeMXBean().getPid() + ", press enter to exit");
+            System.in.read();
+        }
+        java.lang.ref.Reference.reachabilityFence(set); // keep the set reachable until here
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
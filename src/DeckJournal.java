@@ -0,0 +1,258 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+// Append-only log of add/edit/remove operations kept next to a deck ("Names.csv.journal").
+// Edits cost one small record instead of a full rewrite; once the log outgrows a quarter of
+// the deck it is folded back into the deck file on a background thread.
+public class DeckJournal
+{
+    public static final char ADD = 'A';
+    public static final char EDIT = 'E';
+    public static final char REMOVE = 'R';
+
+    private static final long MIN_COMPACT_BYTES = 1L << 20; // never compact a journal smaller than this
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "deck-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public interface Operation
+    {
+        void apply(char op, String term, String info);
+    }
+
+    private final String deckPath;
+    private final File file; // live journal
+    private final File compacting; // journal being folded into the deck
+    private DataOutputStream out; // opened on the first append
+    private long length; // bytes in the live journal
+    private volatile Future<?> pending; // running (or last) compaction, if any
+
+    public DeckJournal(String deckPath)
+    {
+        this.deckPath = deckPath;
+        this.file = new File(deckPath + ".journal");
+        this.compacting = new File(deckPath + ".journal.compacting");
+        this.length = file.length();
+    }
+
+    // Applies every complete record on top of the freshly loaded deck: first any journal a
+    // crashed compaction left behind, then the live one. A torn record at the tail is cut off.
+    public void replay(Operation target) throws IOException
+    {
+        if(compacting.exists())
+        {
+            replay(compacting, target);
+        }
+
+        if(file.exists())
+        {
+            length = replay(file, target);
+        }
+    }
+
+    private static long replay(File journal, Operation target) throws IOException
+    {
+        long good = 0;
+        long total = journal.length();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal))))
+        {
+            CRC32 crc = new CRC32();
+
+            while(true)
+            {
+                char op;
+                byte[] term;
+                byte[] info;
+
+                try
+                {
+                    op = (char) in.readByte();
+                    term = readBlob(in, total);
+                    info = readBlob(in, total);
+                    if(term == null || info == null)
+                    {
+                        break;
+                    }
+
+                    crc.reset();
+                    crc.update(op);
+                    crc.update(term);
+                    crc.update(info);
+                    if((int) crc.getValue() != in.readInt())
+                    {
+                        break;
+                    }
+                }
+
+                catch (EOFException e) // torn tail
+                {
+                    break;
+                }
+
+                target.apply(op, new String(term, StandardCharsets.UTF_8), new String(info, StandardCharsets.UTF_8));
+                good += 1 + 4 + term.length + 4 + info.length + 4;
+            }
+        }
+
+        if(good < total)
+        {
+            try (RandomAccessFile raf = new RandomAccessFile(journal, "rw"))
+            {
+                raf.setLength(good);
+            }
+        }
+
+        return good;
+    }
+
+    private static byte[] readBlob(DataInputStream in, long limit) throws IOException
+    {
+        int n = in.readInt();
+        if(n < 0 || n > limit) // garbage length, the rest of the file is not trustworthy
+        {
+            return null;
+        }
+
+        byte[] blob = new byte[n];
+        in.readFully(blob);
+        return blob;
+    }
+
+    public void append(char op, String term, String info) throws IOException
+    {
+        byte[] t = term.getBytes(StandardCharsets.UTF_8);
+        byte[] i = info == null ? new byte[0] : info.getBytes(StandardCharsets.UTF_8);
+
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        crc.update(t);
+        crc.update(i);
+
+        if(out == null)
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+
+        out.writeByte(op);
+        out.writeInt(t.length);
+        out.write(t);
+        out.writeInt(i.length);
+        out.write(i);
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        length += 1 + 4 + t.length + 4 + i.length + 4;
+    }
+
+    public long length()
+    {
+        return length;
+    }
+
+    public boolean shouldCompact()
+    {
+        Future<?> p = pending;
+        if(p != null && !p.isDone())
+        {
+            return false;
+        }
+
+        return length >= Math.max(MIN_COMPACT_BYTES, new File(deckPath).length() / 4);
+    }
+
+    // Rotates the live journal out of the way and rewrites the deck from the given snapshot in
+    // the background. The snapshot must already contain every record written so far; its cards
+    // are turned into strings on the compactor thread, so the caller can hold its lock meanwhile.
+    // written runs on the compactor thread once the new deck file is in place.
+    public void compact(FlashcardSet.Snapshot deck, Runnable written) throws IOException
+    {
+        closeOutput();
+
+        if(compacting.exists() && file.exists()) // an earlier compaction failed; keep its records in front of ours
+        {
+            Files.write(compacting.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+            Files.delete(file.toPath());
+        }
+
+        else if(file.exists())
+        {
+            Files.move(file.toPath(), compacting.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        length = 0;
+
+        pending = compactor.submit(() -> {
+            FlashcardSet.writeDeck(deckPath, FlashcardSet.formatOf(deckPath), deck.terms(), deck.infos());
+            Files.deleteIfExists(compacting.toPath()); // its records are in the deck now
+            written.run();
+            return null;
+        });
+    }
+
+    // Called after the whole deck was written out some other way: nothing left to replay.
+    public void clear() throws IOException
+    {
+        awaitCompaction();
+        closeOutput();
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(compacting.toPath());
+        length = 0;
+    }
+
+    // Waits for a running compaction; false if the last one failed (its records stay in the
+    // .compacting journal and are replayed on the next load).
+    public boolean awaitCompaction()
+    {
+        Future<?> p = pending;
+        if(p == null)
+        {
+            return true;
+        }
+
+        try
+        {
+            p.get();
+            return true;
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void closeOutput() throws IOException
+    {
+        if(out != null)
+        {
+            out.close();
+            out = null;
+        }
+    }
+}
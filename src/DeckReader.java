@@ -0,0 +1,92 @@
+import java.io.File;
+import java.io.IOException;
+
+// Reads a deck (.csv, .cdeck or .cdeckz) in fixed-size batches of cards, for loaders that hand cards to
+// another thread as they arrive instead of building the whole set first. A sink can stop the
+// read by throwing an unchecked exception (e.g. CancellationException).
+public class DeckReader
+{
+    public static class Batch
+    {
+        public final String[] terms;
+        public final String[] infos;
+        public int count = 0;
+        public double progress = 0; // fraction of the file read when the batch was sealed
+
+        Batch(int capacity)
+        {
+            terms = new String[capacity];
+            infos = new String[capacity];
+        }
+
+        boolean isFull()
+        {
+            return count == terms.length;
+        }
+    }
+
+    public interface Sink
+    {
+        void batch(Batch batch);
+    }
+
+    public static LoadStats read(String path, int batchSize, Sink sink) throws IOException
+    {
+        if(IndexedDeck.isIndexed(path))
+        {
+            return readIndexed(path, batchSize, sink);
+        }
+
+        long fileSize = Math.max(1, new File(path).length());
+        Batch[] current = {new Batch(batchSize)};
+
+        LoadStats stats = MappedCsvLoader.load(path, row -> {
+            Batch batch = current[0];
+            batch.terms[batch.count] = row.term();
+            batch.infos[batch.count] = row.info();
+            batch.count++;
+
+            if(batch.isFull())
+            {
+                batch.progress = (double) row.position() / fileSize;
+                sink.batch(batch);
+                current[0] = new Batch(batchSize);
+            }
+        });
+
+        current[0].progress = 1;
+        sink.batch(current[0]); // last, possibly empty, batch
+        return stats;
+    }
+
+    private static LoadStats readIndexed(String path, int batchSize, Sink sink) throws IOException
+    {
+        long start = System.nanoTime();
+        try (IndexedDeck deck = IndexedDeck.open(path))
+        {
+            Batch batch = new Batch(batchSize);
+            for(int i = 0; i < deck.size(); i++)
+            {
+                batch.terms[batch.count] = deck.term(i);
+                batch.infos[batch.count] = deck.info(i);
+                batch.count++;
+
+                if(batch.isFull())
+                {
+                    batch.progress = (double) (i + 1) / deck.size();
+                    sink.batch(batch);
+                    batch = new Batch(batchSize);
+                }
+            }
+
+            batch.progress = 1;
+            sink.batch(batch);
+            return new LoadStats(deck.format(), deck.size(), new File(path).length(), System.nanoTime() - start);
+        }
+
+        catch (java.io.UncheckedIOException e) // a damaged block of a .cdeckz
+        {
+            throw e.getCause();
+        }
+    }
+}
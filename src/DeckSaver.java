@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind saving of whole decks. saveLater() only marks a set dirty; the save runs on the
+// saver thread once the set has been quiet for the debounce window, so a burst of edits costs one
+// rewrite instead of one per edit. A set that keeps changing is still saved at least every
+// maxDelay. Each save is FlashcardSet.saveData(): temp file, fsync, atomic rename. Until it runs
+// the edits are safe in the deck's journal, and pending saves are flushed when the JVM exits.
+public class DeckSaver
+{
+    private static final DeckSaver shared = new DeckSaver(500, 5000);
+
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "deck-saver");
+        t.setDaemon(true);
+        return t;
+    });
+    private final IdentityHashMap<FlashcardSet, Pending> pending = new IdentityHashMap<>();
+
+    private long requests = 0;
+    private long saves = 0;
+    private long coalesced = 0; // requests folded into a save that was already scheduled
+    private long failures = 0;
+    private long lastNanos = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    private static class Pending
+    {
+        final long firstRequest; // System.nanoTime() of the oldest unsaved request
+        ScheduledFuture<?> task;
+
+        Pending(long firstRequest)
+        {
+            this.firstRequest = firstRequest;
+        }
+    }
+
+    public DeckSaver(long debounceMillis, long maxDelayMillis)
+    {
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "deck-saver-flush"));
+    }
+
+    public static DeckSaver shared()
+    {
+        return shared;
+    }
+
+    // Schedules a save of set, or pushes back the one already scheduled (never past maxDelay
+    // after the first unsaved request).
+    public synchronized void saveLater(FlashcardSet set)
+    {
+        requests++;
+        long now = System.nanoTime();
+        Pending p = pending.get(set);
+        if(p == null)
+        {
+            p = new Pending(now);
+            pending.put(set, p);
+        }
+
+        else
+        {
+            coalesced++;
+            p.task.cancel(false);
+        }
+
+        long waited = TimeUnit.NANOSECONDS.toMillis(now - p.firstRequest);
+        long delay = Math.max(0, Math.min(debounceMillis, maxDelayMillis - waited));
+        p.task = timer.schedule(() -> save(set), delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Saves every pending set now, on the calling thread, and waits for the saves to finish.
+    public void flush()
+    {
+        List<FlashcardSet> sets;
+        synchronized(this)
+        {
+            sets = new ArrayList<>(pending.keySet());
+        }
+
+        for(FlashcardSet set : sets)
+        {
+            save(set);
+        }
+    }
+
+    public synchronized boolean isPending(FlashcardSet set)
+    {
+        return pending.containsKey(set);
+    }
+
+    private void save(FlashcardSet set)
+    {
+        synchronized(this)
+        {
+            Pending p = pending.remove(set);
+            if(p == null) // flushed or saved by the other path already
+            {
+                return;
+            }
+            p.task.cancel(false);
+        }
+
+        long start = System.nanoTime();
+        boolean saved = set.saveData(); // edits made meanwhile schedule the next save
+        long nanos = System.nanoTime() - start;
+
+        synchronized(this)
+        {
+            if(!saved)
+            {
+                failures++;
+                return;
+            }
+            saves++;
+            lastNanos = nanos;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+
+    public synchronized long getRequests()
+    {
+        return requests;
+    }
+
+    public synchronized long getSaves()
+    {
+        return saves;
+    }
+
+    public synchronized long getCoalesced()
+    {
+        return coalesced;
+    }
+
+    public synchronized long getFailures()
+    {
+        return failures;
+    }
+
+    public synchronized double lastSaveMillis()
+    {
+        return lastNanos / 1e6;
+    }
+
+    public synchronized double meanSaveMillis()
+    {
+        return saves == 0 ? 0 : totalNanos / 1e6 / saves;
+    }
+
+    public synchronized double maxSaveMillis()
+    {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format(Locale.ROOT, "%d saves for %d requests (%d coalesced, %d failed), save %.1f ms mean, %.1f ms max, %.1f ms last",
+                saves, requests, coalesced, failures, meanSaveMillis(), maxSaveMillis(), lastSaveMillis());
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-threaded stress run for FlashcardSet. Writers add, edit, remove and shuffle cards (every
+// edit goes through the journal, so compactions run too) and append whole groups of cards in one
+// batch, while readers check snapshots and the locked getters:
+//   - every info names its own term, so a card never pairs one write's term with another's info
+//   - a snapshot agrees with itself: size, terms, infos, positions and lookups all match
+//   - a group appended in one batch is seen whole or not at all
+//   - a snapshot never changes once taken, and two snapshots of one version are the same deck
+// At the end the deck must hold exactly what the writers' own records say, in memory and after
+// a save and reload. Before the threads start, a single-threaded run checks that edits which grow
+// an info after removals (so the store compacts in the middle of the edit) land on the right card.
+//
+// usage: java DeckStress [--seconds 10] [--writers 4] [--readers 4] [--cards 2000]
+public class DeckStress
+{
+    private static final int GROUP = 16; // cards per appended group
+
+    private final FlashcardSet set;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final List<String> failures = java.util.Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentHashMap<Long, Long> fingerprints = new ConcurrentHashMap<>(); // version -> deck hash
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong lockedReads = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+
+    DeckStress(FlashcardSet set)
+    {
+        this.set = set;
+    }
+
+    private void fail(String message)
+    {
+        if(failures.size() < 20)
+        {
+            failures.add(message);
+        }
+        running.set(false);
+    }
+
+    private static String infoFor(String term, int generation) // lengths vary, so edits both fit in place and move
+    {
+        return "info of " + term + " #" + generation + "~".repeat(generation % 97 == 0 ? 4000 : generation % 7);
+    }
+
+    // Adds 40 cards, removes 30, then edits one to 5000 bytes, and goes on with random adds,
+    // removes and growing or shrinking edits against a model. Returns the first mismatch, or null.
+    static String checkGrowingEdits(long seed)
+    {
+        CardStore store = new CardStore();
+        Map<String, String> model = new HashMap<>();
+        for(int i = 0; i < 40; i++)
+        {
+            store.add("t" + i, "i" + i);
+            model.put("t" + i, "i" + i);
+        }
+
+        for(int i = 0; i < 30; i++)
+        {
+            store.remove("t" + i);
+            model.remove("t" + i);
+        }
+        store.edit("t35", "x".repeat(5000));
+        model.put("t35", "x".repeat(5000));
+
+        Random random = new Random(seed);
+        for(int step = 0; step < 200000; step++)
+        {
+            String term = "t" + random.nextInt(300);
+            int op = random.nextInt(10);
+            if(op < 3)
+            {
+                String info = "a" + step;
+                if(store.add(term, info))
+                {
+                    model.put(term, info);
+                }
+            }
+
+            else if(op < 5)
+            {
+                store.remove(term);
+                model.remove(term);
+            }
+
+            else
+            {
+                String info = "e" + step + "~".repeat(random.nextInt(random.nextInt(8) == 0 ? 5000 : 40));
+                if(store.edit(term, info))
+                {
+                    model.put(term, info);
+                }
+            }
+
+            if(step % 1000 == 0)
+            {
+                store.snapshot(); // as the GUI does on every show: later edits must not overwrite its text
+            }
+
+            if(!java.util.Objects.equals(store.info(term), model.get(term)) || store.size() != model.size())
+            {
+                return "step " + step + ": " + term + " mismatched after op " + op;
+            }
+        }
+
+        for(Map.Entry<String, String> e : model.entrySet())
+        {
+            if(!e.getValue().equals(store.info(e.getKey())))
+            {
+                return e.getKey() + " mismatched at the end";
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String term, String info)
+    {
+        return info != null && info.startsWith("info of " + term + " #");
+    }
+
+    // Single-card writes on a term range of its own, mirrored in a private model.
+    private Map<String, String> write(int writer, int cards, long seed)
+    {
+        Random random = new Random(seed);
+        Map<String, String> model = new HashMap<>();
+        int generation = 0;
+
+        while(running.get())
+        {
+            String term = "w" + writer + "-" + random.nextInt(cards);
+            int op = random.nextInt(100);
+            generation++;
+
+            if(op < 45)
+            {
+                String info = infoFor(term, generation);
+                set.add(term, info);
+                model.putIfAbsent(term, info);
+            }
+
+            else if(op < 75)
+            {
+                String info = infoFor(term, generation);
+                set.edit(term, info);
+                model.computeIfPresent(term, (t, old) -> info);
+            }
+
+            else if(op < 98)
+            {
+                set.remove(term);
+                model.remove(term);
+            }
+
+            else
+            {
+                set.shuffle(random.nextLong());
+            }
+            writes.incrementAndGet();
+        }
+        return model;
+    }
+
+    // Appends groups of GROUP cards, one batch each; groups are never taken out again.
+    private void appendGroups()
+    {
+        for(long g = 0; running.get(); g++)
+        {
+            DeckReader.Batch batch = new DeckReader.Batch(GROUP);
+            for(int i = 0; i < GROUP; i++)
+            {
+                String term = "g" + g + "-" + i;
+                batch.terms[i] = term;
+                batch.infos[i] = infoFor(term, i);
+            }
+            batch.count = GROUP;
+            set.append(batch);
+            groups.incrementAndGet();
+            java.util.concurrent.locks.LockSupport.parkNanos(1_000_000); // keeps the deck to a size readers can check
+        }
+    }
+
+    private void readSnapshots()
+    {
+        long lastVersion = -1;
+        while(running.get())
+        {
+            FlashcardSet.Snapshot s = set.snapshot();
+            if(s.getVersion() < lastVersion)
+            {
+                fail("snapshot version went back from " + lastVersion + " to " + s.getVersion());
+            }
+            lastVersion = s.getVersion();
+
+            long hash = check(s);
+            Long seen = fingerprints.putIfAbsent(s.getVersion(), hash);
+            if(seen != null && seen != hash)
+            {
+                fail("two snapshots of version " + s.getVersion() + " differ");
+            }
+
+            Thread.yield(); // let writers run, then the snapshot must read the same
+            if(check(s) != hash)
+            {
+                fail("snapshot of version " + s.getVersion() + " changed under its reader");
+            }
+            snapshots.incrementAndGet();
+        }
+    }
+
+    // Checks one snapshot's invariants; returns a hash of its cards in snapshot order.
+    private long check(FlashcardSet.Snapshot s)
+    {
+        int size = s.getSize();
+        List<String> terms = s.terms();
+        List<String> infos = s.infos();
+        if(terms.size() != size || infos.size() != size)
+        {
+            fail("snapshot of " + size + " cards lists " + terms.size() + " terms and " + infos.size() + " infos");
+            return 0;
+        }
+
+        HashMap<String, Integer> groupSizes = new HashMap<>();
+        long hash = size;
+        for(int i = 0; i < size; i++)
+        {
+            String term = s.getTerm(i);
+            String info = s.getInfo(term);
+            if(!matches(term, info))
+            {
+                fail("card " + i + " pairs " + term + " with " + info);
+            }
+
+            if(s.indexOf(term) != i || !s.isTerm(term))
+            {
+                fail(term + " is card " + i + " but indexOf says " + s.indexOf(term));
+            }
+
+            if(!matches(terms.get(i), infos.get(i)))
+            {
+                fail("deck order pairs " + terms.get(i) + " with " + infos.get(i));
+            }
+
+            if(term.startsWith("g"))
+            {
+                groupSizes.merge(term.substring(0, term.indexOf('-')), 1, Integer::sum);
+            }
+            hash = hash * 31 + term.hashCode() * 17L + (info == null ? 0 : info.hashCode());
+        }
+
+        for(Map.Entry<String, Integer> e : groupSizes.entrySet())
+        {
+            if(e.getValue() != GROUP)
+            {
+                fail("group " + e.getKey() + " seen with " + e.getValue() + " of its " + GROUP + " cards");
+            }
+        }
+        return hash;
+    }
+
+    private void readLocked(long seed) // the plain getters, each call locking the set
+    {
+        Random random = new Random(seed);
+        while(running.get())
+        {
+            int size = set.getSize();
+            String term = set.getTerm(size == 0 ? 0 : random.nextInt(size));
+            if(term != null)
+            {
+                String info = set.getInfo(term);
+                if(info != null && !matches(term, info)) // null: removed between the two calls
+                {
+                    fail("getInfo(" + term + ") returned " + info);
+                }
+            }
+
+            List<String> found = set.searchAll("w" + random.nextInt(4) + "-1");
+            for(String t : found)
+            {
+                if(!t.contains("-1"))
+                {
+                    fail("search returned " + t);
+                }
+            }
+            lockedReads.incrementAndGet();
+        }
+    }
+
+    private void checkFinal(FlashcardSet deck, Map<String, String> expected, String what)
+    {
+        FlashcardSet.Snapshot s = deck.snapshot();
+        HashSet<String> terms = new HashSet<>(s.terms());
+        if(s.getSize() != expected.size() || !terms.equals(expected.keySet()))
+        {
+            fail(what + ": " + s.getSize() + " cards, expected " + expected.size());
+            return;
+        }
+
+        for(Map.Entry<String, String> e : expected.entrySet())
+        {
+            if(!e.getValue().equals(s.getInfo(e.getKey())))
+            {
+                fail(what + ": " + e.getKey() + " has " + s.getInfo(e.getKey()) + ", expected " + e.getValue());
+                return;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int seconds = 10;
+        int writers = 4;
+        int readers = 4;
+        int cards = 2000;
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch(args[i])
+            {
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--writers": writers = Integer.parseInt(args[i + 1]); break;
+                case "--readers": readers = Integer.parseInt(args[i + 1]); break;
+                case "--cards": cards = Integer.parseInt(args[i + 1]); break;
+                default: System.out.println("unknown option " + args[i]); return;
+            }
+        }
+
+        String grown = checkGrowingEdits(42);
+        if(grown != null)
+        {
+            System.out.println("growing edits: " + grown);
+            System.exit(1);
+        }
+
+        File dir = Files.createTempDirectory("deck-stress").toFile();
+        String path = new File(dir, "stress.csv").getPath();
+        FlashcardSet set = FlashcardSet.streaming(path);
+        set.finishLoading(null);
+        DeckStress stress = new DeckStress(set);
+
+        List<Thread> threads = new ArrayList<>();
+        List<Map<String, String>> models = java.util.Collections.synchronizedList(new ArrayList<>());
+        for(int w = 0; w < writers; w++)
+        {
+            int writer = w;
+            int range = cards;
+            threads.add(new Thread(() -> models.add(stress.write(writer, range, 1000 + writer)), "writer-" + w));
+        }
+        threads.add(new Thread(stress::appendGroups, "appender"));
+        for(int r = 0; r < readers; r++)
+        {
+            long seed = r;
+            threads.add(new Thread(r % 2 == 0 ? stress::readSnapshots : () -> stress.readLocked(seed), "reader-" + r));
+        }
+
+        for(Thread t : threads)
+        {
+            t.setUncaughtExceptionHandler((thread, e) -> stress.fail(thread.getName() + ": " + e));
+            t.start();
+        }
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while(stress.running.get() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(50);
+        }
+        stress.running.set(false);
+        for(Thread t : threads)
+        {
+            t.join();
+        }
+
+        Map<String, String> expected = new HashMap<>();
+        for(Map<String, String> model : models)
+        {
+            expected.putAll(model);
+        }
+        for(long g = 0; g < stress.groups.get(); g++)
+        {
+            for(int i = 0; i < GROUP; i++)
+            {
+                expected.put("g" + g + "-" + i, infoFor("g" + g + "-" + i, i));
+            }
+        }
+        stress.checkFinal(set, expected, "in memory");
+
+        set.saveData();
+        stress.checkFinal(new FlashcardSet(path), expected, "after reload");
+
+        System.out.printf("%d writes, %d groups appended, %d snapshots checked, %d locked reads, %d versions seen%n",
+                stress.writes.get(), stress.groups.get(), stress.snapshots.get(), stress.lockedReads.get(), stress.fingerprints.size());
+        for(File f : dir.listFiles())
+        {
+            f.delete();
+        }
+        dir.delete();
+
+        if(!stress.failures.isEmpty())
+        {
+            stress.failures.forEach(System.out::println);
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
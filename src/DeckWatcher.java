@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hot reload for open decks: watches their folders and merges changes made to the files from
+// outside (the content team editing CSVs on a shared volume) into the open FlashcardSet. Each
+// change is read as a DeckDiff against the fingerprints of the version the set last matched,
+// so only the added, changed and removed rows touch the set and its indexes, instead of a full
+// reload. Editors save in several writes, so a file is read once it has been quiet for a short
+// while. The app's own saves come back as events too and merge to nothing.
+// Sets are held weakly; a deck nobody has open any more is dropped from the watch.
+public class DeckWatcher
+{
+    private static final long QUIET_MILLIS = 250;
+    private static final DeckWatcher shared = new DeckWatcher();
+
+    private final WatchService service; // null where the platform cannot watch files
+    private final ScheduledExecutorService merger = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "deck-watcher-merge");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<Path, WatchKey> folders = new HashMap<>();
+    private final Map<Path, Watched> decks = new HashMap<>(); // absolute deck path -> its open set
+    private final List<Consumer<FlashcardSet>> listeners = new CopyOnWriteArrayList<>();
+    private long merges = 0; // changes merged into a set
+    private long rows = 0; // cards added, changed or removed by them
+
+    private static class Watched
+    {
+        final WeakReference<FlashcardSet> set;
+        DeckDiff.Fingerprints base; // the file as the set last matched it; only the merger thread uses it
+        ScheduledFuture<?> pending;
+
+        Watched(FlashcardSet set)
+        {
+            this.set = new WeakReference<>(set);
+        }
+    }
+
+    public DeckWatcher()
+    {
+        WatchService watching = null;
+        try
+        {
+            watching = FileSystems.getDefault().newWatchService();
+        }
+
+        catch (IOException e) // no hot reload here; decks still load and save as usual
+        {
+            e.printStackTrace();
+        }
+        this.service = watching;
+
+        if(service != null)
+        {
+            Thread t = new Thread(this::run, "deck-watcher");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    public static DeckWatcher shared()
+    {
+        return shared;
+    }
+
+    // Starts following set's file. The file is fingerprinted on the merger thread, so this can be
+    // called right after a load on the EDT.
+    public void watch(FlashcardSet set)
+    {
+        if(service == null || set.getFilepath().isEmpty())
+        {
+            return;
+        }
+
+        Path deck = Paths.get(set.getFilepath()).toAbsolutePath().normalize();
+        Watched watched = new Watched(set);
+        merger.execute(() -> {
+            try
+            {
+                watched.base = DeckDiff.read(deck.toString());
+                synchronized(this)
+                {
+                    Path folder = deck.getParent();
+                    if(!folders.containsKey(folder))
+                    {
+                        folders.put(folder, folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY));
+                    }
+                    decks.put(deck, watched);
+                }
+            }
+
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public synchronized void unwatch(FlashcardSet set)
+    {
+        decks.values().removeIf(w -> w.set.get() == set);
+    }
+
+    // Called on the merger thread after changes from the file were merged into a set.
+    public void addListener(Consumer<FlashcardSet> listener)
+    {
+        listeners.add(listener);
+    }
+
+    public synchronized long getMerges()
+    {
+        return merges;
+    }
+
+    public synchronized long getRowsMerged()
+    {
+        return rows;
+    }
+
+    private void run()
+    {
+        try
+        {
+            while(true)
+            {
+                WatchKey key = service.take();
+                Path folder = (Path) key.watchable();
+                for(WatchEvent<?> event : key.pollEvents())
+                {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) // events were lost: check every deck there
+                    {
+                        changedIn(folder);
+                    }
+
+                    else
+                    {
+                        changed(folder.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+        }
+
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // shutting down
+        }
+    }
+
+    private synchronized void changedIn(Path folder)
+    {
+        for(Path deck : decks.keySet())
+        {
+            if(deck.getParent().equals(folder))
+            {
+                changed(deck);
+            }
+        }
+    }
+
+    private synchronized void changed(Path deck) // (re)starts the quiet period of a watched deck
+    {
+        Watched watched = decks.get(deck);
+        if(watched == null)
+        {
+            return;
+        }
+
+        if(watched.pending != null)
+        {
+            watched.pending.cancel(false);
+        }
+        watched.pending = merger.schedule(() -> merge(deck, watched), QUIET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void merge(Path deck, Watched watched)
+    {
+        FlashcardSet set = watched.set.get();
+        if(set == null)
+        {
+            synchronized(this)
+            {
+                decks.remove(deck, watched);
+            }
+            return;
+        }
+
+        if(!Files.exists(deck)) // deleted, or halfway through a save by rename; a create event follows
+        {
+            return;
+        }
+
+        try
+        {
+            DeckDiff diff = DeckDiff.between(watched.base, deck.toString());
+            watched.base = diff.next;
+            if(diff.isEmpty())
+            {
+                return;
+            }
+
+            int applied = set.merge(diff);
+            DeckCache.shared().rewritten(set.getFilepath(), set); // the cached copy matches the new file
+            if(applied == 0) // our own save, or rows that were all edited here as well
+            {
+                return;
+            }
+
+            synchronized(this)
+            {
+                merges++;
+                rows += applied;
+            }
+
+            for(Consumer<FlashcardSet> listener : listeners)
+            {
+                listener.accept(set);
+            }
+        }
+
+        catch (IOException e) // read while still being written, most likely; the next event retries
+        {
+            e.printStackTrace();
+        }
+    }
+}
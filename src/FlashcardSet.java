@@ -1,23 +1,57 @@
-import java.util.Collections;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.HashMap;
-import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
+// A deck and its quiz state. Every method may be called from any thread: they lock the set,
+// so a background load, save or index sees each write whole. Readers that should not wait
+// for (or hold up) writers take a snapshot() instead.
 public class FlashcardSet
 {
-    private HashMap<String, String> cards = new HashMap<>(); // hashmap to store each term with its associated info
-    private ArrayList<String> terms = new ArrayList<>(); // arraylist for storing names of terms as strings for convinience
-    private int size = 0; // size of set
+    private CardStore cards = new CardStore(); // every term with its info, in deck order, one shared text arena
     private int score = 0; // score for quizzes;
     private int answers = 0; // number of questions answered
     private boolean quizFlag = false; // flag to indicate quiz in session
     private String filepath = "";
-    ArrayList<QA> questions = new ArrayList<>(); // Stores only terms (questions)
+    private LoadStats lastLoad; // timing of the last loadData
+    private DeckJournal journal; // edits made since the deck file was last written
+    private Random seeds = new Random(); // picks a seed for every shuffle()
+    private Random random = new Random(); // reseeded per shuffle so an order can be replayed
+    private long shuffleSeed = 0;
+    private volatile boolean loading = false; // cards are still arriving from a background load
+    private long version = 0; // bumped by every change to the cards or their order
+    private volatile Snapshot published; // snapshot of the current version, once someone asked for it
+    private volatile long memory = 0; // cards.memoryBytes() as of the last load or save
+    private final HashMap<String, String> answerKeys = new HashMap<>(); // folded forms of the non-ASCII terms
+    private final AnswerGrader grader = new AnswerGrader();
+    final List<QA> questions = new AbstractList<QA>() // live view of the cards, in the same (possibly shuffled) order as getTerm
+    {
+        @Override
+        public QA get(int index)
+        {
+            synchronized(FlashcardSet.this)
+            {
+                return cards.question(index);
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            return getSize();
+        }
+    };
 
     public FlashcardSet(String filename) // constructor that reads data from a file
     {
@@ -26,71 +60,132 @@ public class FlashcardSet
         score = 0;
     }
 
-    public void setFilepath(String filename)
+    private FlashcardSet()
+    {
+    }
+
+    // An empty set for a background loader to fill with append() and then finishLoading().
+    public static FlashcardSet streaming(String filename)
+    {
+        FlashcardSet set = new FlashcardSet();
+        set.setFilepath(filename);
+        set.loading = true;
+        return set;
+    }
+
+    public synchronized void append(DeckReader.Batch batch) // adds cards without journaling them; new terms only
+    {
+        for(int i = 0; i < batch.count; i++)
+        {
+            put(batch.terms[i], batch.infos[i]);
+        }
+    }
+
+    public synchronized void finishLoading(LoadStats stats) // replays the journal once every card is in
+    {
+        lastLoad = stats;
+        loading = false;
+
+        try
+        {
+            journal().replay(this::apply);
+        }
+
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        memory = cards.memoryBytes();
+        Metrics.loaded(stats);
+    }
+
+    public boolean isLoading()
+    {
+        return loading;
+    }
+
+    public synchronized void setFilepath(String filename)
     {
         filepath = filename;
+        journal = null;
     }
 
-    public String getFilepath()
+    public synchronized String getFilepath()
     {
         return filepath;
     }
 
-    public int getSize() // returns size
+    public synchronized int getSize() // returns size
     {
-        return terms.size();
+        return cards.size();
     }
 
-    public void setScore(int s)
+    public synchronized void setScore(int s)
     {
         score = s;
     }
 
-    public int getScore()
+    public synchronized int getScore()
     {
         return score;
     }
 
-    public void resetScore()
+    public synchronized void resetScore()
     {
         score = 0;
     }
 
-    public int incrementScore()
+    public synchronized int incrementScore()
     {
         score++;
         return score;
     }
 
-    public void display()
+    public synchronized void display()
     {
-        if(size == 0)
+        if(cards.size() == 0)
         {
             return ;
         }
 
         else
         {
-            for(int i = 0; i < terms.size(); i++)
+            for(int i = 0; i < cards.size(); i++)
             {
-                System.out.println(terms.get(i));
+                System.out.println(cards.term(i));
             }
         }
     }
     
-    public void loadData() // uses a filereader to read data
+    public synchronized void loadData() // streams the deck through a memory-mapped reader
     {
-        try (BufferedReader reader = new BufferedReader(new FileReader(this.getFilepath())))
+        cards.clear(); // a reload replaces the cards, it does not pile the file on top of them
+        answerKeys.clear();
+        changed();
+
+        try
         {
-            String line = ""; // string to store current line in file
+            if(IndexedDeck.isIndexed(this.getFilepath()))
+            {
+                loadIndexed();
+            }
 
-            while((line = reader.readLine()) != null) // if line is not "", then continue loop
+            else
             {
-               if (line.trim().isEmpty()) continue;     // skip blanks
-                String[] parts = line.split(",", 2);     // <-- keep the answer intact
-                if (parts.length < 2) continue;          // or log/throw if you prefer
-                add(parts[0].trim(), parts[1].trim());
+                lastLoad = MappedCsvLoader.load(this.getFilepath(), row -> {
+                    if(cards.add(row))
+                    {
+                        changed();
+                        if(!row.termIsAscii())
+                        {
+                            keyAnswer(row.term());
+                        }
+                    }
+                });
             }
+            journal().replay(this::apply);
+            memory = cards.memoryBytes();
+            Metrics.loaded(lastLoad);
         }
 
         catch (IOException e) // if it fails
@@ -99,100 +194,298 @@ public class FlashcardSet
             return ;
         }
     }
+
+    private void loadIndexed() throws IOException
+    {
+        long start = System.nanoTime();
+        try (IndexedDeck deck = IndexedDeck.open(this.getFilepath()))
+        {
+            for(int i = 0; i < deck.size(); i++)
+            {
+                put(deck.term(i), deck.info(i));
+            }
+            lastLoad = new LoadStats(deck.format(), deck.size(), new java.io.File(this.getFilepath()).length(), System.nanoTime() - start);
+        }
+
+        catch (java.io.UncheckedIOException e) // a damaged block of a .cdeckz
+        {
+            throw e.getCause();
+        }
+    }
+
+    public synchronized LoadStats getLastLoadStats() // rows/sec and bytes/sec of the most recent loadData
+    {
+        return lastLoad;
+    }
+
+    // Estimated heap held by the cards as of the last load or save. Never waits for the set's
+    // lock, so the deck cache can ask while a save holds it.
+    public long memoryBytes()
+    {
+        return memory;
+    }
+
+    // The cards as they are now, frozen. Cheap: until the next write every caller gets the
+    // same snapshot, and taking one copies no card text.
+    public Snapshot snapshot()
+    {
+        Snapshot s = published;
+        if(s != null)
+        {
+            return s;
+        }
+
+        synchronized(this)
+        {
+            if(published == null)
+            {
+                published = new Snapshot(cards.snapshot(), version);
+            }
+            return published;
+        }
+    }
+
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    private void changed() // a write is done: the next snapshot must be a new one
+    {
+        version++;
+        published = null;
+    }
     
-    public void add(String term, String info)
+    public synchronized void add(String term, String info)
     {
-        if(!cards.containsKey(term))
+        if(put(term, info))
         {
-            cards.put(term, info);
-            terms.add(term);
-            questions.add(new QA(term, info));
+            record(DeckJournal.ADD, term, info);
         }
-        size++;
+    }
 
+    public synchronized void remove(String term)
+    {
+        if(drop(term))
+        {
+            record(DeckJournal.REMOVE, term, null);
+        }
     }
 
-    public void remove(String term)
+    public synchronized void edit(String term, String newInfo)
     {
-        if(cards.containsKey(term))
+        if(change(term, newInfo))
         {
-            cards.remove(term);
-            terms.remove(term);
+            record(DeckJournal.EDIT, term, newInfo);
         }
+    }
 
-        size--;
+    private boolean put(String term, String info)
+    {
+        if(!cards.add(term, info))
+        {
+            return false;
+        }
+        changed();
+        keyAnswer(term);
+        return true;
     }
 
-    public void edit(String term, String newInfo)
+    private boolean drop(String term)
     {
-        if(cards.containsKey(term))
+        if(!cards.remove(term))
         {
-            cards.put(term, newInfo);
+            return false;
         }
+        changed();
+        answerKeys.remove(term);
+        return true;
     }
 
-    public boolean isTerm(String term)
+    private void keyAnswer(String term) // ASCII terms are folded while grading, without allocating
     {
-        return cards.containsKey(term);
+        if(AnswerGrader.needsUnicodeFolding(term))
+        {
+            answerKeys.put(term, AnswerGrader.normalize(term));
+        }
+    }
+
+    // Grades a typed answer for the card whose term is expected.
+    public synchronized AnswerGrader.Grade grade(String expected, String attempt)
+    {
+        return grader.grade(attempt, expected, answerKey(expected));
+    }
+
+    // Precomputed folded form of a term, or null if the grader can fold it on the fly.
+    public synchronized String answerKey(String term)
+    {
+        return answerKeys.get(term);
     }
 
-    public String getTerm(int index)
+    private boolean change(String term, String newInfo)
     {
-        if(index < 0 || index >= size)
+        if(!cards.edit(term, newInfo))
         {
-            return null;
+            return false;
         }
+        changed();
+        return true;
+    }
 
-        else
+    private void apply(char op, String term, String info) // replays one journal record
+    {
+        if(op == DeckJournal.ADD)
+        {
+            put(term, info);
+        }
+
+        else if(op == DeckJournal.EDIT)
         {
-            return terms.get(index);
+            change(term, info);
+        }
+
+        else if(op == DeckJournal.REMOVE)
+        {
+            drop(term);
         }
     }
 
-    public String getInfo(String term)
+    // Brings in changes someone else made to the deck file (see DeckDiff) in one step, without
+    // journaling them: the file has them already. A card added, edited or removed here since the
+    // file was last read keeps the local version. Returns the cards added, changed or removed.
+    public synchronized int merge(DeckDiff diff)
     {
-        if(cards.containsKey(term))
+        int applied = 0;
+        for(int i = 0; i < diff.terms.size(); i++)
         {
-            return cards.get(term);
+            String term = diff.terms.get(i);
+            long key = MappedCsvLoader.hash(term);
+            String current = cards.info(term);
+            boolean done;
+
+            if(current == null) // new in the file, unless it was removed here
+            {
+                done = !diff.base.contains(key) && put(term, diff.infos.get(i));
+            }
+
+            else // changed in the file, unless it was edited (or added) here too
+            {
+                done = diff.base.contains(key) && diff.base.get(key) == MappedCsvLoader.hash(current) && change(term, diff.infos.get(i));
+            }
+
+            if(done)
+            {
+                applied++;
+            }
         }
 
-        else
+        if(diff.removed.size() > 0) // known by hash only: look for them among the cards
         {
-            return null;
+            for(String term : cards.terms())
+            {
+                long key = MappedCsvLoader.hash(term);
+                if(diff.removed.contains(key) && diff.removed.get(key) == MappedCsvLoader.hash(cards.info(term)) && drop(term))
+                {
+                    applied++;
+                }
+            }
         }
+        memory = cards.memoryBytes();
+        return applied;
     }
 
-    public void shuffle() 
+    private DeckJournal journal()
     {
-        // Shuffle the order of terms
-        Collections.shuffle(terms);
-        // Rebuild questions list in the same order
-        questions.clear();
-        for (String t : terms) 
+        if(journal == null)
         {
-            String info = cards.get(t);
-            questions.add(new QA(t, info));
+            journal = new DeckJournal(getFilepath());
         }
+        return journal;
     }
 
-    public String search(String term) 
+    private void record(char op, String term, String info) // persists an edit already applied in memory
+    {
+        try
+        {
+            DeckJournal j = journal();
+            j.append(op, term, info);
+
+            if(!loading && j.shouldCompact()) // never fold a half-loaded deck back into the file
+            {
+                memory = cards.memoryBytes();
+                String path = filepath; // the callback runs on the compactor thread, which must not wait for the lock
+                j.compact(snapshot(), () -> DeckCache.shared().rewritten(path, this));
+            }
+        }
+
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized boolean isTerm(String term)
+    {
+        return cards.contains(term);
+    }
+
+    public synchronized String getTerm(int index)
+    {
+        if(index < 0 || index >= cards.size())
+        {
+            return null;
+        }
+
+        else
+        {
+            return cards.term(index);
+        }
+    }
+
+    public synchronized int indexOf(String term) // position of the card in the current order, or -1
+    {
+        return cards.indexOf(term);
+    }
+
+    public synchronized String getInfo(String term)
+    {
+        return cards.info(term);
+    }
+
+    public synchronized void shuffle() 
+    {
+        shuffle(seeds.nextLong());
+    }
+
+    public synchronized void shuffle(long seed) // same deck and seed give the same order
+    {
+        // Shuffle the order of the cards; questions follows automatically
+        shuffleSeed = seed;
+        random.setSeed(seed);
+        cards.shuffle(random);
+        changed();
+    }
+
+    public synchronized long getShuffleSeed() // seed of the current order, to replay a quiz
+    {
+        return shuffleSeed;
+    }
+
+    public synchronized String search(String term) 
     {
         // Simple exact match
-        if (cards.containsKey(term)) 
+        if (cards.contains(term)) 
         {
-            return cards.get(term);
+            return cards.info(term);
         }
         // Or partial match: find any terms that contain the query
         StringBuilder results = new StringBuilder();
-        for (String t : terms) 
+        for (String t : searchAll(term)) 
         {
-            if (t.toLowerCase().contains(term.toLowerCase())) 
-            {
-                results.append(t)
-                       .append(": ")
-                       .append(cards.get(t))
-                       .append("\n");
-            }
+            results.append(t)
+                   .append(": ")
+                   .append(cards.info(t))
+                   .append("\n");
         }
         if (results.length() > 0) 
         {
@@ -201,32 +494,200 @@ public class FlashcardSet
         return null;
     }
     
-    public void saveData()
+    public synchronized List<String> searchAll(String query) // every term containing the query, ignoring case, in deck order
     {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(this.getFilepath())))
+        long start = System.nanoTime();
+        List<String> found = cards.search(query);
+        Metrics.SEARCH.since(start);
+        return found;
+    }
+
+    public void writeTo(String path) throws IOException // a copy of the cards, in the format path's extension names
+    {
+        Snapshot s = snapshot(); // writes go on while the file is written
+        writeDeck(path, formatOf(path), s.terms(), s.infos());
+    }
+
+    // Rewrites the whole deck; the journal is no longer needed afterwards. The lock is only held
+    // to rotate the journal and take a snapshot: the file is written on the journal's compactor
+    // thread while edits go on (they land in a fresh journal). Returns once the file is in place,
+    // false if it could not be written, in which case the edits are still in the journal.
+    public boolean saveData()
+    {
+        DeckJournal j;
+        synchronized(this)
+        {
+            if(loading)
+            {
+                return false;
+            }
+
+            try
+            {
+                String path = this.getFilepath();
+                j = journal();
+                j.awaitCompaction();
+                memory = cards.memoryBytes();
+                j.compact(snapshot(), () -> DeckCache.shared().rewritten(path, this));
+            }
+
+            catch (IOException e)
+            {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        return j.awaitCompaction();
+    }
+
+    static String formatOf(String path) // deck format is decided by the file extension
+    {
+        if(CompressedDeck.isCompressed(path))
+        {
+            return CompressedDeck.EXTENSION;
+        }
+        return BinaryDeck.isBinary(path) ? BinaryDeck.EXTENSION : ".csv";
+    }
+
+    // Writes the deck to a temporary file next to path, forces it to disk and renames it over
+    // path, so a crash leaves either the old deck or the new one, never a truncated file. The
+    // temporary name is unique, so two writers of one path never share a half-written file.
+    static void writeDeck(String path, String format, List<String> terms, List<String> infos) throws IOException
+    {
+        long start = System.nanoTime();
+        Path target = Paths.get(path).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try
+        {
+            writeFile(tmp.toString(), format, terms, infos);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE))
+            {
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        catch (IOException e)
+        {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        try (FileChannel folder = FileChannel.open(target.getParent(), StandardOpenOption.READ))
+        {
+            folder.force(true); // makes the rename itself durable
+        }
+
+        catch (IOException e)
+        {
+            // not every platform can open a folder; the rename is still atomic there
+        }
+        Metrics.SAVE.since(start);
+    }
+
+    private static void writeFile(String path, String format, List<String> terms, List<String> infos) throws IOException
+    {
+        if(format.equals(BinaryDeck.EXTENSION))
+        {
+            BinaryDeck.write(path, terms, infos);
+            return ;
+        }
+
+        if(format.equals(CompressedDeck.EXTENSION))
+        {
+            CompressedDeck.write(path, terms, infos);
+            return ;
+        }
+
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(path, StandardCharsets.UTF_8))) // as MappedCsvLoader reads it
         {
             for(int i = 0; i < terms.size(); i++)
             {
                 if(i < terms.size() - 1)
                 {
-                    String line = terms.get(i) + "," + cards.get(terms.get(i)) + "\n";
+                    String line = terms.get(i) + "," + infos.get(i) + "\n";
                     writer.write(line);
                 }
 
                 else
                 {
-                    String line = terms.get(i) + "," + cards.get(terms.get(i));
+                    String line = terms.get(i) + "," + infos.get(i);
                     writer.write(line);
                 }
             }
         }
+    }
 
-        catch (IOException e)
+    // The deck at one moment, from snapshot(). Reading it takes no lock and never shows a write
+    // half done; it keeps the order the cards had, shuffle included, and ignores later changes.
+    public static final class Snapshot
+    {
+        private final CardStore cards;
+        private final long version;
+        private final ConcurrentHashMap<String, String> answerKeys = new ConcurrentHashMap<>(); // folded when first graded
+
+        private Snapshot(CardStore cards, long version)
         {
-            e.printStackTrace();
-            return ;
+            this.cards = cards;
+            this.version = version;
+        }
+
+        public long getVersion() // the set's version when this was taken
+        {
+            return version;
+        }
+
+        public int getSize()
+        {
+            return cards.size();
+        }
+
+        public String getTerm(int index) // null if out of range, as FlashcardSet.getTerm
+        {
+            return index < 0 || index >= cards.size() ? null : cards.term(index);
+        }
+
+        public String getInfo(String term)
+        {
+            return cards.info(term);
+        }
+
+        public boolean isTerm(String term)
+        {
+            return cards.contains(term);
+        }
+
+        public int indexOf(String term)
+        {
+            return cards.indexOf(term);
+        }
+
+        public QA question(int index)
+        {
+            return cards.question(index);
+        }
+
+        public String answerKey(String term) // as FlashcardSet.answerKey, shared by every reader of the snapshot
+        {
+            return AnswerGrader.needsUnicodeFolding(term) ? answerKeys.computeIfAbsent(term, AnswerGrader::normalize) : null;
+        }
+
+        public List<String> searchAll(String query) // scans the terms: the trigram index stays with the set
+        {
+            return cards.search(query);
+        }
+
+        public List<String> terms() // deck order, ignoring any shuffle
+        {
+            return cards.terms();
+        }
+
+        public List<String> infos()
+        {
+            return cards.infos();
         }
     }
+
 	// --- Added for CLI compatibility ---
     public void displayTerm(int index) {
         String term = getTerm(index);
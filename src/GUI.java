@@ -1,6 +1,10 @@
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.awt.event.KeyEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
@@ -9,15 +13,19 @@ import javax.swing.border.EmptyBorder;
 public class GUI {
 
     private final String dir = "Cards/";
-    private String filename = "";
-    private FlashcardSet set;
 
-    // Shared UI state so Create/Modify can update review panel directly
-    private JLabel sharedCardLabel;
-    private JLabel sharedProgressLabel;
-    private Runnable sharedUpdateCard;
-    private int sharedCurrentIndex = 0;
-    private boolean sharedShowQuestion = true;
+    // Card views of the open windows, refreshed when a file merge changes their deck. Each window
+    // has its own view and session, so windows never move each other's cards. EDT only; a view
+    // goes away with its window.
+    private final java.util.Set<CardView> views = java.util.Collections.newSetFromMap(new java.util.WeakHashMap<>());
+
+    // Review schedule and answer history of every deck open in some window. Windows on the same
+    // deck share one, so they append to the same logs, and the last of them to close closes it. EDT only.
+    private final java.util.Map<FlashcardSet, DeckState> deckStates = new java.util.HashMap<>();
+
+    private static final ExecutorService deckLoaders = Background.executor("deck-loader");
+    private final DeckCatalog catalog = new DeckCatalog(java.util.List.of(new File("Cards"), new File("../Cards")));
+    private static final int LOAD_BATCH = 2000; // cards handed to the EDT at a time
 
     public GUI() {
         Font helvetica = new Font("Helvetica", Font.PLAIN, 18);
@@ -29,6 +37,14 @@ public class GUI {
         UIManager.put("Panel.font", helvetica);
         UIManager.put("TabbedPane.font", helvetica);
 
+        deckLoaders.submit(catalog::scan); // deck suggestions fill in once the scan is done
+        Metrics.exportJmx(); // load, save, search, grade and paint timings for JConsole
+        DeckWatcher.shared().addListener(changed -> SwingUtilities.invokeLater(() -> {
+            for (CardView view : new java.util.ArrayList<>(views)) {
+                if (view.deck() == changed) view.update(); // the card on screen may be one the file changed
+            }
+        }));
+
         JFrame frame = new JFrame("CogniStudy");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setResizable(true);
@@ -93,13 +109,173 @@ public class GUI {
     }
 
     private java.io.File resolveSetFile(String baseName) {
-        java.io.File f1 = new java.io.File("Cards/" + baseName + ".csv");
-        if (f1.exists()) return f1;
-        java.io.File f2 = new java.io.File("../Cards/" + baseName + ".csv");
-        if (f2.exists()) return f2;
+        java.io.File f1 = resolveIn("Cards/", baseName);
+        if (f1 != null) return f1;
+        return resolveIn("../Cards/", baseName);
+    }
+
+    // Prefers the indexed binary deck (plain or compressed, whichever is newer) unless the CSV
+    // next to it was edited more recently.
+    private java.io.File resolveIn(String folder, String baseName) {
+        java.io.File csv = new java.io.File(folder + baseName + ".csv");
+        java.io.File binary = new java.io.File(folder + baseName + BinaryDeck.EXTENSION);
+        java.io.File compressed = new java.io.File(folder + baseName + CompressedDeck.EXTENSION);
+        if (compressed.exists() && (!binary.exists() || compressed.lastModified() >= binary.lastModified())) binary = compressed;
+        if (binary.exists() && (!csv.exists() || binary.lastModified() >= csv.lastModified())) return binary;
+        if (csv.exists()) return csv;
         return null;
     }
 
+    // Shows the catalogued decks matching what has been typed so far under the field; picking
+    // one fills in its name. Nothing is read from disk while typing.
+    private void suggestDecks(JTextField field) {
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+
+        Runnable update = () -> {
+            popup.setVisible(false);
+            popup.removeAll();
+            if (!field.isShowing() || !field.hasFocus()) return;
+
+            String typed = field.getText().trim();
+            for (DeckCatalog.Entry deck : catalog.matching(typed, 10)) {
+                if (deck.name.equals(typed)) continue;
+
+                String first = deck.firstTerms.isEmpty() ? "" : " - " + String.join(", ", deck.firstTerms);
+                JMenuItem item = new JMenuItem(deck.name + " (" + deck.cards + " cards)" + first);
+                item.addActionListener(e -> field.setText(deck.name));
+                popup.add(item);
+            }
+            if (popup.getComponentCount() > 0) popup.show(field, 0, field.getHeight());
+        };
+
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { SwingUtilities.invokeLater(update); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { SwingUtilities.invokeLater(update); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) {}
+        });
+        field.addFocusListener(new java.awt.event.FocusAdapter() {
+            @Override public void focusGained(java.awt.event.FocusEvent e) { SwingUtilities.invokeLater(update); }
+            @Override public void focusLost(java.awt.event.FocusEvent e) { popup.setVisible(false); }
+        });
+    }
+
+    interface DeckLoadListener {
+        void firstCards(FlashcardSet loaded); // the deck can be shown; more cards may follow
+        default void loaded(FlashcardSet loaded) {}
+        default void failed(FlashcardSet loaded) {} // cancelled, unreadable or empty
+    }
+
+    // Reads a deck on a background thread and hands its cards to the EDT in batches, so the
+    // first cards can be viewed while the rest stream in. A progress bar with a Cancel button
+    // sits at the bottom of the owner window until the load ends. Decks already loaded and
+    // unchanged on disk (or still open elsewhere) come straight from the DeckCache, which never
+    // lets two windows load their own copy of one file.
+    private void loadDeck(JFrame owner, String path, DeckLoadListener listener) {
+        FlashcardSet cached = DeckCache.shared().get(path); // already open in another window
+        if (cached != null && cached.getSize() > 0) {
+            DeckWatcher.shared().watch(cached);
+            listener.firstCards(cached);
+            listener.loaded(cached);
+            return;
+        }
+
+        FlashcardSet fresh = FlashcardSet.streaming(path);
+        FlashcardSet loaded = DeckCache.shared().open(path, fresh);
+        if (loaded != fresh) { // another window has it, and is still loading it or found it empty
+            JOptionPane.showMessageDialog(owner, loaded.isLoading()
+                    ? "That deck is still loading in another window." : "That file has no cards.");
+            listener.failed(fresh);
+            return;
+        }
+
+        JPanel progressPanel = new JPanel(new BorderLayout(10, 0));
+        progressPanel.setBorder(new EmptyBorder(5, 10, 5, 10));
+        JProgressBar progressBar = new JProgressBar(0, 1000);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading...");
+        JButton cancelButton = new JButton("Cancel");
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        owner.add(progressPanel, BorderLayout.SOUTH);
+        owner.revalidate();
+
+        Semaphore inFlight = new Semaphore(8); // batches queued on the EDT, so a slow UI slows the reader
+        final boolean[] shown = {false};
+        final boolean[] finished = {false};
+
+        Runnable close = () -> {
+            finished[0] = true;
+            owner.remove(progressPanel);
+            owner.revalidate();
+            owner.repaint();
+        };
+
+        Future<?> task = deckLoaders.submit(() -> {
+            try {
+                LoadStats stats = DeckReader.read(path, LOAD_BATCH, batch -> {
+                    try {
+                        inFlight.acquire();
+                    } catch (InterruptedException ex) {
+                        throw new CancellationException();
+                    }
+
+                    SwingUtilities.invokeLater(() -> {
+                        inFlight.release();
+                        if (finished[0]) return;
+
+                        loaded.append(batch);
+                        progressBar.setValue((int) (batch.progress * 1000));
+                        progressBar.setString(loaded.getSize() + " cards");
+                        if (!shown[0] && loaded.getSize() > 0) {
+                            shown[0] = true;
+                            listener.firstCards(loaded);
+                        }
+                    });
+                });
+
+                SwingUtilities.invokeLater(() -> {
+                    if (finished[0]) return;
+                    close.run();
+                    loaded.finishLoading(stats);
+                    DeckCache.shared().put(path, loaded);
+                    DeckWatcher.shared().watch(loaded); // edits made to the file from now on are merged in
+
+                    if (loaded.getSize() <= 0) {
+                        JOptionPane.showMessageDialog(owner, "That file has no cards.");
+                        listener.failed(loaded);
+                        return;
+                    }
+
+                    if (!shown[0]) {
+                        shown[0] = true;
+                        listener.firstCards(loaded);
+                    }
+                    listener.loaded(loaded);
+                });
+            } catch (CancellationException ex) {
+                // the Cancel button already cleaned up
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    if (finished[0]) return;
+                    close.run();
+                    DeckCache.shared().release(path, loaded);
+                    JOptionPane.showMessageDialog(owner, "Unable to load " + path);
+                    listener.failed(loaded);
+                });
+            }
+        });
+
+        cancelButton.addActionListener(e -> {
+            if (finished[0]) return;
+            task.cancel(true);
+            close.run();
+            DeckCache.shared().release(path, loaded);
+            listener.failed(loaded);
+        });
+    }
+
     public void reviewGUI() {
         JFrame reviewFrame = new JFrame("Review Flashcards");
 
@@ -109,6 +285,7 @@ public class GUI {
         JPanel textBoxPanel = new JPanel();
         JLabel textBoxLabel = new JLabel("Enter a Flashcard Set: ");
         JTextField textField = new JTextField(20);
+        suggestDecks(textField);
         JButton submitButton = new JButton("Select");
         textBoxPanel.add(textBoxLabel);
         textBoxPanel.add(textField);
@@ -126,6 +303,9 @@ public class GUI {
         reviewFrame.setLocationRelativeTo(null);
         reviewFrame.setVisible(true);
 
+        final FlashcardSet[] chosen = {null}; // the deck this window loaded, and its name
+        final String[] chosenName = {""};
+
         submitButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -143,36 +323,47 @@ public class GUI {
                     return;
                 }
 
-                FlashcardSet loaded = new FlashcardSet(f.getPath());
-                if (loaded.getSize() <= 0) {
-                    JOptionPane.showMessageDialog(reviewFrame, "That file has no cards.");
-                    return;
-                }
-
-                filename = name;
-                set = loaded;
+                submitButton.setEnabled(false);
+                loadDeck(reviewFrame, f.getPath(), new DeckLoadListener() {
+                    @Override
+                    public void firstCards(FlashcardSet loaded) {
+                        chosenName[0] = name;
+                        chosen[0] = loaded;
+                        cardButton.setEnabled(true);
+                    }
 
-                textBoxPanel.remove(textBoxLabel);
-                textBoxPanel.remove(textField);
-                textBoxPanel.remove(submitButton);
-                reviewFrame.revalidate();
-                reviewFrame.repaint();
+                    @Override
+                    public void loaded(FlashcardSet loaded) {
+                        textBoxPanel.remove(textBoxLabel);
+                        textBoxPanel.remove(textField);
+                        textBoxPanel.remove(submitButton);
+                        reviewFrame.revalidate();
+                        reviewFrame.repaint();
+                    }
 
-                cardButton.setEnabled(true);
+                    @Override
+                    public void failed(FlashcardSet loaded) {
+                        if (chosen[0] == loaded) {
+                            chosen[0] = null;
+                            cardButton.setEnabled(false);
+                        }
+                        submitButton.setEnabled(true);
+                    }
+                });
             }
         });
 
         cardButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (set == null || set.questions.isEmpty()) {
+                if (chosen[0] == null || chosen[0].questions.isEmpty()) {
                     JOptionPane.showMessageDialog(reviewFrame, "Load a flashcard set first.");
                     return;
                 }
-                JFrame reviewWindow = new JFrame("Review: " + filename);
+                JFrame reviewWindow = new JFrame("Review: " + chosenName[0]);
                 reviewWindow.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
                 reviewWindow.setLayout(new BorderLayout());
-                reviewWindow.add(reviewFlashcardUI(), BorderLayout.CENTER);
+                reviewWindow.add(reviewFlashcardUI(chosen[0]), BorderLayout.CENTER);
                 reviewWindow.pack();
                 reviewWindow.setLocationRelativeTo(null);
                 reviewWindow.setVisible(true);
@@ -180,41 +371,20 @@ public class GUI {
         });
     }
 
-    public JPanel testUI()
+    public JPanel testUI(FlashcardSet set)
     {
+        CardView view = new CardView(true); // a quiz shows the answer and asks for the term
+
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.setPreferredSize(new Dimension(600, 300));
         mainPanel.setOpaque(false);
 
-        JPanel cardPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2 = (Graphics2D) g.create();
-                int w = getWidth();
-                int h = getHeight();
-                GradientPaint gp = new GradientPaint(0, 0, new Color(255,255,255),
-                        0, h, new Color(230,230,230));
-                g2.setPaint(gp);
-                g2.fillRoundRect(0, 0, w, h, 20, 20);
-
-                g2.setColor(new Color(0,0,0,40));
-                g2.fillRoundRect(4,4,w-8,h-8,20,20);
-
-                g2.dispose();
-            }
-        };
+        JPanel cardPanel = new CardPanel();
         cardPanel.setLayout(new BorderLayout());
         cardPanel.setBorder(new EmptyBorder(20,20,20,20));
 
-        sharedProgressLabel = new JLabel("0 / 0", SwingConstants.CENTER);
-        sharedProgressLabel.setFont(new Font("Helvetica", Font.PLAIN, 16));
-        cardPanel.add(sharedProgressLabel, BorderLayout.NORTH);
-
-        sharedCardLabel = new JLabel("Your Card Appears Here", SwingConstants.CENTER);
-        sharedCardLabel.setFont(new Font("SansSerif", Font.BOLD, 24));
-        sharedCardLabel.setForeground(Color.DARK_GRAY);
-        sharedCardLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        cardPanel.add(sharedCardLabel, BorderLayout.CENTER);
+        cardPanel.add(view.progress, BorderLayout.NORTH);
+        cardPanel.add(view.card, BorderLayout.CENTER);
 
         mainPanel.add(cardPanel, BorderLayout.CENTER);
         
@@ -233,37 +403,16 @@ public class GUI {
         buttonPanel.add(answerButton);
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
-        final int[] currentIndex = {0};
-        final boolean[] showQuestion = {true};
+        final long[] shownAt = {System.nanoTime()}; // when the card on screen appeared, for response times
 
-        
-        set.shuffle();
-
-
-        Runnable updateCard = () -> {
-            if (set != null && !set.questions.isEmpty()) {
-
-                sharedCurrentIndex = currentIndex[0];
-                sharedShowQuestion = !showQuestion[0];
-
-                QA current = set.questions.get(sharedCurrentIndex);
-                sharedCardLabel.setText(sharedShowQuestion ? current.getQuestion() : current.getAnswer());
-                sharedProgressLabel.setText((sharedCurrentIndex+1) + " / " + set.questions.size());
-
-            } else {
-                sharedProgressLabel.setText("0 / 0");
-                sharedCardLabel.setText("No cards available");
-            }
-        };
-
-        sharedUpdateCard = updateCard;
-        updateCard.run();
+        view.show(set, QuizSession.shuffled(set.snapshot())); // shuffled for this quiz only
 
         answerButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
+            if (view.hasCards()) {
 
-                QA temp = set.questions.get(currentIndex[0]);
+                QA temp = view.session().card();
                 String userAnswer = JOptionPane.showInputDialog(mainPanel, "Your Answer: ", JOptionPane.PLAIN_MESSAGE);
+                long responseMillis = (System.nanoTime() - shownAt[0]) / 1_000_000;
               
                 if(userAnswer == null)
                 {
@@ -272,36 +421,49 @@ public class GUI {
 
                 String correctAnswer = temp.getQuestion();
 
-                if(userAnswer.trim().equalsIgnoreCase(correctAnswer.trim()))
+                AnswerGrader.Grade grade = set.grade(correctAnswer, userAnswer);
+                AttemptLog history = view.attempts();
+                if (history != null) {
+                    try {
+                        history.record(correctAnswer, grade, responseMillis, System.currentTimeMillis());
+                    } catch (java.io.IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+
+                if(grade != AnswerGrader.Grade.WRONG)
                 {
-                    JOptionPane.showMessageDialog(mainPanel, "Correct!");
-                    currentIndex[0] = (currentIndex[0]+1)%set.questions.size();
-                    showQuestion[0] = true;
-                    updateCard.run();
-                    set.incrementScore();
+                    JOptionPane.showMessageDialog(mainPanel, grade == AnswerGrader.Grade.CORRECT
+                            ? "Correct!" : "Correct! Watch the spelling: \n" + correctAnswer);
                 }
 
                 else
                 {
                     JOptionPane.showMessageDialog(mainPanel, "Incorrect! The Correct Answer is: \n" + correctAnswer);
-                    currentIndex[0] = (currentIndex[0]+1)%set.questions.size();
-                    showQuestion[0] = true;
-                    updateCard.run();
                 }
 
-                if(currentIndex[0] == 0)
+                boolean finished = view.answer(grade);
+                shownAt[0] = System.nanoTime();
+
+                if(finished)
                 {
-                        int totalQuestions = set.questions.size();
-                        int score = set.getScore();
+                        int totalQuestions = view.session().size();
+                        int score = view.session().getScore();
 
                         double percentage = ((double)score / (double)totalQuestions) * 100.0; 
 
-                        JOptionPane.showMessageDialog(mainPanel, "Quiz Finished!\nYour score for this attempt is: " + percentage);
+                        String allTime = "";
+                        if (history != null) {
+                            AttemptLog.Stats deck = history.deck();
+                            allTime = String.format("\nAll attempts on this set: %.0f%% right over %d answers, median answer time %.1f s",
+                                    deck.getAccuracy() * 100, deck.getAttempts(), deck.percentileMillis(0.5) / 1000.0);
+                        }
+
+                        JOptionPane.showMessageDialog(mainPanel, "Quiz Finished!\nYour score for this attempt is: " + percentage + allTime);
                         JOptionPane.showMessageDialog(mainPanel, "A new quiz attempt will automatically start. To exit, please close the test window.");
                         
-                        set.shuffle();
-                        set.resetScore();
-                        updateCard.run();
+                        view.show(set, QuizSession.shuffled(set.snapshot()));
+                        shownAt[0] = System.nanoTime();
 
                         return ;
                 }
@@ -315,9 +477,9 @@ public class GUI {
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT,0),"next");
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE,0),"flip");
 
-        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]-1+set.questions.size())%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]+1)%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){showQuestion[0]=!showQuestion[0]; updateCard.run();}}});
+        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.previous(); }});
+        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.next(); }});
+        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.flip(); }});
 
         return mainPanel;
     }
@@ -332,6 +494,7 @@ public class GUI {
         JPanel textBoxPanel = new JPanel();
         JLabel textBoxLabel = new JLabel("Enter a Flashcard Set: ");
         JTextField textField = new JTextField(20);
+        suggestDecks(textField);
         JButton submitButton = new JButton("Select");
         textBoxPanel.add(textBoxLabel);
         textBoxPanel.add(textField);
@@ -349,6 +512,9 @@ public class GUI {
         testFrame.setLocationRelativeTo(null);
         testFrame.setVisible(true);
 
+        final FlashcardSet[] chosen = {null}; // the deck this window loaded, and its name
+        final String[] chosenName = {""};
+
         submitButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -366,41 +532,50 @@ public class GUI {
                     return;
                 }
 
-                FlashcardSet loaded = new FlashcardSet(f.getPath());
-                if (loaded.getSize() <= 0) {
-                    JOptionPane.showMessageDialog(testFrame, "That file has no cards.");
-                    return;
-                }
-
-                filename = name;
-                set = loaded;
+                submitButton.setEnabled(false);
+                loadDeck(testFrame, f.getPath(), new DeckLoadListener() {
+                    @Override
+                    public void firstCards(FlashcardSet loaded) {
+                        chosenName[0] = name;
+                        chosen[0] = loaded;
+                    }
 
-                textBoxPanel.remove(textBoxLabel);
-                textBoxPanel.remove(textField);
-                textBoxPanel.remove(submitButton);
-                testFrame.revalidate();
-                testFrame.repaint();
+                    @Override
+                    public void loaded(FlashcardSet loaded) {
+                        cardButton.setEnabled(true); // a quiz takes the whole deck, so it waits for the last card
+                        textBoxPanel.remove(textBoxLabel);
+                        textBoxPanel.remove(textField);
+                        textBoxPanel.remove(submitButton);
+                        testFrame.revalidate();
+                        testFrame.repaint();
+                    }
 
-                cardButton.setEnabled(true);
+                    @Override
+                    public void failed(FlashcardSet loaded) {
+                        if (chosen[0] == loaded) {
+                            chosen[0] = null;
+                            cardButton.setEnabled(false);
+                        }
+                        submitButton.setEnabled(true);
+                    }
+                });
             }
         });
 
         cardButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (set == null || set.questions.isEmpty()) {
+                if (chosen[0] == null || chosen[0].questions.isEmpty()) {
                     JOptionPane.showMessageDialog(testFrame, "Load a flashcard set first.");
                     return;
                 }
-                JFrame reviewWindow = new JFrame("Test: " + filename);
+                JFrame reviewWindow = new JFrame("Test: " + chosenName[0]);
                 reviewWindow.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
                 reviewWindow.setLayout(new BorderLayout());
-                reviewWindow.add(testUI(), BorderLayout.CENTER);
+                reviewWindow.add(testUI(chosen[0]), BorderLayout.CENTER);
                 reviewWindow.pack();
                 reviewWindow.setLocationRelativeTo(null);
                 reviewWindow.setVisible(true);
-
-                set.resetScore();
             }
         });
     }
@@ -422,6 +597,7 @@ public class GUI {
         JTextField textField = new JTextField(20);
         textField.setFont(new Font("Helvetica", Font.PLAIN, 16));
         textField.setBorder(BorderFactory.createLineBorder(Color.WHITE, 2, true));
+        suggestDecks(textField);
 
         AnimatedButton submitButton = new AnimatedButton("Select");
         submitButton.setPreferredSize(new Dimension(120, 40));
@@ -430,7 +606,8 @@ public class GUI {
         textBoxPanel.add(textField);
         textBoxPanel.add(submitButton);
 
-        JPanel flashcardPanel = createFlashcardUI();
+        CardView view = new CardView(false);
+        JPanel flashcardPanel = createFlashcardUI(view);
         flashcardPanel.setOpaque(false);
 
         mainPanel.add(Box.createVerticalStrut(20));
@@ -451,23 +628,31 @@ public class GUI {
                     return;
                 }
 
-                set = new FlashcardSet(dir + filename + ".csv");
-                sharedCurrentIndex = 0;
-                sharedShowQuestion = true;
-
-                if (sharedCardLabel != null && sharedProgressLabel != null) {
-                    if (set != null && !set.questions.isEmpty()) {
-                        sharedCardLabel.setText(set.questions.get(0).getQuestion());
-                        sharedProgressLabel.setText("1 / " + set.questions.size());
-                    } else {
-                        sharedCardLabel.setText("No cards available");
-                        sharedProgressLabel.setText("0 / 0");
+                submitButton.setEnabled(false);
+                loadDeck(createFrame, f.getPath(), new DeckLoadListener() {
+                    @Override
+                    public void firstCards(FlashcardSet loaded) {
+                        view.show(loaded, new QuizSession(loaded.snapshot(), 0)); // deck order, as the file has it
+
+                        flashcardPanel.setVisible(true);
+                        createFrame.revalidate();
+                        createFrame.repaint();
                     }
-                }
 
-                flashcardPanel.setVisible(true);
-                createFrame.revalidate();
-                createFrame.repaint();
+                    @Override
+                    public void loaded(FlashcardSet loaded) {
+                        if (view.deck() == loaded) view.update(); // the count now covers every card
+                        submitButton.setEnabled(true);
+                    }
+
+                    @Override
+                    public void failed(FlashcardSet loaded) {
+                        if (view.deck() == loaded) {
+                            view.show(null, null);
+                        }
+                        submitButton.setEnabled(true);
+                    }
+                });
             } else {
                 JOptionPane.showMessageDialog(null, "Please enter a filename: ");
             }
@@ -478,42 +663,19 @@ public class GUI {
         createFrame.setVisible(true);
     }
 
-    public JPanel createFlashcardUI()
+    private JPanel createFlashcardUI(CardView view)
     {
         
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.setPreferredSize(new Dimension(600, 300));
         mainPanel.setOpaque(false);
 
-        JPanel cardPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2 = (Graphics2D) g.create();
-                int w = getWidth();
-                int h = getHeight();
-                GradientPaint gp = new GradientPaint(0, 0, new Color(255,255,255),
-                        0, h, new Color(230,230,230));
-                g2.setPaint(gp);
-                g2.fillRoundRect(0, 0, w, h, 20, 20);
-
-                g2.setColor(new Color(0,0,0,40));
-                g2.fillRoundRect(4,4,w-8,h-8,20,20);
-
-                g2.dispose();
-            }
-        };
+        JPanel cardPanel = new CardPanel();
         cardPanel.setLayout(new BorderLayout());
         cardPanel.setBorder(new EmptyBorder(20,20,20,20));
 
-        sharedProgressLabel = new JLabel("0 / 0", SwingConstants.CENTER);
-        sharedProgressLabel.setFont(new Font("Helvetica", Font.PLAIN, 16));
-        cardPanel.add(sharedProgressLabel, BorderLayout.NORTH);
-
-        sharedCardLabel = new JLabel("Your Card Appears Here", SwingConstants.CENTER);
-        sharedCardLabel.setFont(new Font("SansSerif", Font.BOLD, 24));
-        sharedCardLabel.setForeground(Color.DARK_GRAY);
-        sharedCardLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        cardPanel.add(sharedCardLabel, BorderLayout.CENTER);
+        cardPanel.add(view.progress, BorderLayout.NORTH);
+        cardPanel.add(view.card, BorderLayout.CENTER);
 
         mainPanel.add(cardPanel, BorderLayout.CENTER);
 
@@ -544,6 +706,10 @@ public class GUI {
         AnimatedButton nextButton = new AnimatedButton("Next");
         nextButton.setPreferredSize(buttonSize);
         nextButton.setGradient(new Color(139, 195, 74), new Color(104, 159, 56));
+
+        AnimatedButton browseButton = new AnimatedButton("Browse");
+        browseButton.setPreferredSize(buttonSize);
+        browseButton.setGradient(new Color(3, 169, 244), new Color(2, 136, 209));
         
         buttonPanel.add(newButton);
         buttonPanel.add(addButton);
@@ -551,28 +717,10 @@ public class GUI {
         buttonPanel.add(flipButton);
         buttonPanel.add(prevButton);
         buttonPanel.add(removeButton);
+        buttonPanel.add(browseButton);
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
-        final int[] currentIndex = {0};
-        final boolean[] showQuestion = {true};
-
-        Runnable updateCard = () -> {
-            if (set != null && !set.questions.isEmpty()) {
-                sharedCurrentIndex = currentIndex[0];
-                sharedShowQuestion = showQuestion[0];
-
-                QA current = set.questions.get(sharedCurrentIndex);
-                sharedCardLabel.setText(sharedShowQuestion ? current.getQuestion() : current.getAnswer());
-                sharedProgressLabel.setText((sharedCurrentIndex+1) + " / " + set.questions.size());
-            } else {
-                sharedProgressLabel.setText("0 / 0");
-                sharedCardLabel.setText("No cards available");
-
-            }
-        };
-
-        sharedUpdateCard = updateCard;
-        updateCard.run();
+        view.update();
 
         newButton.addActionListener(e -> {
 
@@ -608,6 +756,12 @@ public class GUI {
         });
 
         addButton.addActionListener(e -> {
+            FlashcardSet set = view.deck();
+            if (set != null && set.isLoading()) {
+                JOptionPane.showMessageDialog(mainPanel, "Please wait until the set finishes loading.");
+                return;
+            }
+
             if (set != null ) {
 
                 String question = JOptionPane.showInputDialog(mainPanel,"Enter Question/Term:", JOptionPane.PLAIN_MESSAGE);
@@ -629,8 +783,8 @@ public class GUI {
                     }
 
                     set.add(question, answer);
+                    DeckSaver.shared().saveLater(set); // journaled already; the deck file follows once edits pause
                     JOptionPane.showMessageDialog(mainPanel, "Term Added Sucessfully.");
-                    set.saveData();
                 }
 
                 else
@@ -644,56 +798,48 @@ public class GUI {
                     }
 
                     set.edit(question, answer);
-                    JOptionPane.showMessageDialog(mainPanel, "Term Edited Sucessfully. Exit and Review to Save Changes.");
-                    set.saveData();
+                    DeckSaver.shared().saveLater(set);
+                    JOptionPane.showMessageDialog(mainPanel, "Term Edited Sucessfully.");
                 }
 
-                currentIndex[0] = 0;
-                showQuestion[0] = true;
-                set.loadData();
-                updateCard.run();
+                view.show(set, new QuizSession(set.snapshot(), 0));
             }
         });
 
         removeButton.addActionListener(e -> {
+            FlashcardSet set = view.deck();
 
-            if(set != null && !set.questions.isEmpty()) {
+            if (set != null && set.isLoading()) {
+                JOptionPane.showMessageDialog(mainPanel, "Please wait until the set finishes loading.");
+                return;
+            }
 
-                set.remove(set.getTerm(currentIndex[0]));
-                JOptionPane.showMessageDialog(mainPanel, "Term Removed Sucessfully. Exit and Review to Save Changes.");
+            if(view.hasCards()) {
 
-                currentIndex[0] = 0;
-                showQuestion[0] = true;
+                set.remove(view.term());
+                DeckSaver.shared().saveLater(set);
+                JOptionPane.showMessageDialog(mainPanel, "Term Removed Sucessfully.");
 
-                set.saveData();
-                updateCard.run();
-                set.loadData();
-                updateCard.run();
+                view.showFront(); // the next card moves up into the cursor's place
             }
         });
 
-        prevButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                currentIndex[0] = (currentIndex[0]-1 + set.questions.size())%set.questions.size();
-                showQuestion[0] = true;
-                updateCard.run();
+        browseButton.addActionListener(e -> {
+            FlashcardSet browsed = view.deck();
+            if (browsed == null) {
+                JOptionPane.showMessageDialog(mainPanel, "Load a flashcard set first.");
+                return;
             }
-        });
 
-        nextButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                currentIndex[0] = (currentIndex[0]+1)%set.questions.size();
-                showQuestion[0] = true;
-                updateCard.run();
-            }
+            String title = new File(browsed.getFilepath()).getName();
+            new DeckBrowser(browsed, title, position -> { // double-click shows that card here
+                if (view.deck() == browsed) view.seek(position);
+            }).setVisible(true);
         });
 
-        flipButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                showQuestion[0] = !showQuestion[0];
-                updateCard.run();
-            }
-        });
+        prevButton.addActionListener(e -> view.previous());
+        nextButton.addActionListener(e -> view.next());
+        flipButton.addActionListener(e -> view.flip());
 
         InputMap im = mainPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
         ActionMap am = mainPanel.getActionMap();
@@ -702,48 +848,27 @@ public class GUI {
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT,0),"next");
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE,0),"flip");
 
-        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]-1+set.questions.size())%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]+1)%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){showQuestion[0]=!showQuestion[0]; updateCard.run();}}});
+        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.previous(); }});
+        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.next(); }});
+        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.flip(); }});
 
         return mainPanel;
 
     }
 
-    public JPanel reviewFlashcardUI() {
+    public JPanel reviewFlashcardUI(FlashcardSet set) {
+        CardView view = new CardView(false);
+
         JPanel mainPanel = new JPanel(new BorderLayout());
         mainPanel.setPreferredSize(new Dimension(600, 300));
         mainPanel.setOpaque(false);
 
-        JPanel cardPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2 = (Graphics2D) g.create();
-                int w = getWidth();
-                int h = getHeight();
-                GradientPaint gp = new GradientPaint(0, 0, new Color(255,255,255),
-                        0, h, new Color(230,230,230));
-                g2.setPaint(gp);
-                g2.fillRoundRect(0, 0, w, h, 20, 20);
-
-                g2.setColor(new Color(0,0,0,40));
-                g2.fillRoundRect(4,4,w-8,h-8,20,20);
-
-                g2.dispose();
-            }
-        };
+        JPanel cardPanel = new CardPanel();
         cardPanel.setLayout(new BorderLayout());
         cardPanel.setBorder(new EmptyBorder(20,20,20,20));
 
-        sharedProgressLabel = new JLabel("0 / 0", SwingConstants.CENTER);
-        sharedProgressLabel.setFont(new Font("Helvetica", Font.PLAIN, 16));
-        cardPanel.add(sharedProgressLabel, BorderLayout.NORTH);
-
-        sharedCardLabel = new JLabel("Your Card Appears Here", SwingConstants.CENTER);
-        sharedCardLabel.setFont(new Font("SansSerif", Font.BOLD, 24));
-        sharedCardLabel.setForeground(Color.DARK_GRAY);
-        sharedCardLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        cardPanel.add(sharedCardLabel, BorderLayout.CENTER);
+        cardPanel.add(view.progress, BorderLayout.NORTH);
+        cardPanel.add(view.card, BorderLayout.CENTER);
 
         mainPanel.add(cardPanel, BorderLayout.CENTER);
 
@@ -767,63 +892,67 @@ public class GUI {
         nextButton.setPreferredSize(buttonSize);
         nextButton.setGradient(new Color(139, 195, 74), new Color(104, 159, 56));
 
+        AnimatedButton againButton = new AnimatedButton("Again");
+        againButton.setPreferredSize(buttonSize);
+        againButton.setGradient(new Color(244, 67, 54), new Color(211, 47, 47));
+
+        AnimatedButton gotItButton = new AnimatedButton("Got It");
+        gotItButton.setPreferredSize(buttonSize);
+        gotItButton.setGradient(new Color(76, 175, 80), new Color(56, 142, 60));
+
         buttonPanel.add(shuffleButton);
         buttonPanel.add(nextButton);
         buttonPanel.add(flipButton);
         buttonPanel.add(prevButton);
+        buttonPanel.add(againButton);
+        buttonPanel.add(gotItButton);
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
-        final int[] currentIndex = {0};
-        final boolean[] showQuestion = {true};
+        view.show(set, new QuizSession(set.snapshot(), 0));
+
+        shuffleButton.addActionListener(e -> {
+            if (view.hasCards()) view.show(set, QuizSession.shuffled(set.snapshot())); // this window's order only
+        });
 
-        Runnable updateCard = () -> {
-            if (set != null && !set.questions.isEmpty()) {
-                sharedCurrentIndex = currentIndex[0];
-                sharedShowQuestion = showQuestion[0];
+        prevButton.addActionListener(e -> view.previous());
+        nextButton.addActionListener(e -> view.next());
+        flipButton.addActionListener(e -> view.flip());
 
-                QA current = set.questions.get(sharedCurrentIndex);
-                sharedCardLabel.setText(sharedShowQuestion ? current.getQuestion() : current.getAnswer());
-                sharedProgressLabel.setText((sharedCurrentIndex+1) + " / " + set.questions.size());
-            } else {
-                sharedProgressLabel.setText("0 / 0");
-                sharedCardLabel.setText("No cards available");
-            }
-        };
+        // Grades the card on screen and moves to the card the scheduler wants next.
+        java.util.function.IntConsumer grade = quality -> {
+            if (!view.hasCards() || set.isLoading()) return;
 
-        sharedUpdateCard = updateCard;
-        updateCard.run();
+            ReviewScheduler s = view.scheduler();
+            if (s == null) return;
 
-        shuffleButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                set.shuffle();
-                currentIndex[0] = 0;
-                showQuestion[0] = true;
-                updateCard.run();
+            long now = System.currentTimeMillis();
+            try {
+                s.review(view.term(), quality, now);
+            } catch (java.io.IOException ex) {
+                ex.printStackTrace();
             }
-        });
 
-        prevButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                currentIndex[0] = (currentIndex[0]-1 + set.questions.size())%set.questions.size();
-                showQuestion[0] = true;
-                updateCard.run();
+            String due = s.next(now);
+            if (due == null) {
+                JOptionPane.showMessageDialog(mainPanel, "No more cards are due. Next review: "
+                        + java.text.DateFormat.getDateTimeInstance().format(new java.util.Date(s.nextDueTime())));
+                return;
             }
-        });
 
-        nextButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                currentIndex[0] = (currentIndex[0]+1)%set.questions.size();
-                showQuestion[0] = true;
-                updateCard.run();
+            view.update();
+            int index = view.session().getDeck().indexOf(due);
+            if (index < 0) { // added since this shuffled pass began: the scheduler already has the deck as it is now
+                view.catchUp();
+                index = view.session().getDeck().indexOf(due);
+                if (index < 0) return;
             }
-        });
 
-        flipButton.addActionListener(e -> {
-            if (set != null && !set.questions.isEmpty()) {
-                showQuestion[0] = !showQuestion[0];
-                updateCard.run();
-            }
-        });
+            view.seek(index);
+            view.progress.setText(view.progress.getText() + "  (" + s.dueCount(now) + " due)");
+        };
+
+        againButton.addActionListener(e -> grade.accept(1));
+        gotItButton.addActionListener(e -> grade.accept(4));
 
         InputMap im = mainPanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
         ActionMap am = mainPanel.getActionMap();
@@ -832,45 +961,296 @@ public class GUI {
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT,0),"next");
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_SPACE,0),"flip");
 
-        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]-1+set.questions.size())%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){currentIndex[0]=(currentIndex[0]+1)%set.questions.size(); showQuestion[0]=true; updateCard.run();}}});
-        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ if(set!=null&&!set.questions.isEmpty()){showQuestion[0]=!showQuestion[0]; updateCard.run();}}});
+        am.put("prev", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.previous(); }});
+        am.put("next", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.next(); }});
+        am.put("flip", new AbstractAction() {@Override public void actionPerformed(ActionEvent e){ view.flip(); }});
 
         return mainPanel;
     }
 
-    private static class GradientPanel extends JPanel {
+    // The review schedule and answer history of one deck, each opened on first use.
+    private static final class DeckState {
+        private final FlashcardSet set;
+        private ReviewScheduler scheduler;
+        private AttemptLog attempts;
+        int views = 0; // windows showing the deck
+
+        DeckState(FlashcardSet set) {
+            this.set = set;
+        }
+
+        // Review state of the set, brought up to date with its cards; null if it cannot be read.
+        ReviewScheduler scheduler() {
+            if (scheduler == null) {
+                try {
+                    scheduler = ReviewScheduler.open(set.getFilepath());
+                } catch (java.io.IOException ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(null, "Unable to read the review schedule for this set.");
+                    return null;
+                }
+            }
+            try {
+                scheduler.sync(set, System.currentTimeMillis()); // no-op unless the cards changed since
+            } catch (java.io.IOException ex) {
+                ex.printStackTrace(); // the next sync tries the save again
+            }
+            return scheduler;
+        }
+
+        AttemptLog attempts() { // null if the history cannot be opened: the quiz goes on without it
+            if (attempts == null) {
+                try {
+                    attempts = AttemptLog.open(set.getFilepath());
+                } catch (java.io.IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            return attempts;
+        }
+
+        void close() {
+            try {
+                if (scheduler != null) scheduler.close();
+                if (attempts != null) attempts.close();
+            } catch (java.io.IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    // The card shown in one window: its labels, the deck, and the window's own QuizSession over a
+    // snapshot of it. Other windows on the same deck have their own, so shuffling or moving here
+    // never moves a card anywhere else. A test view shows the answer side first. The deck's review
+    // schedule and answer history are shared (DeckState) and let go of when the window closes.
+    private final class CardView {
+        final JLabel progress = new JLabel("0 / 0", SwingConstants.CENTER);
+        final JLabel card = new JLabel("Your Card Appears Here", SwingConstants.CENTER);
+        private final boolean answerFirst;
+        private FlashcardSet deck;
+        private QuizSession session;
+        private DeckState state; // of deck, once the window reviews or quizzes
+        private QuizSession served; // session and cursor of the card last counted in Metrics.CARDS_SERVED
+        private int servedPosition = -1;
+        private boolean showQuestion = true;
+
+        CardView(boolean answerFirst) {
+            this.answerFirst = answerFirst;
+            progress.setFont(new Font("Helvetica", Font.PLAIN, 16));
+            card.setFont(new Font("SansSerif", Font.BOLD, 24));
+            card.setForeground(Color.DARK_GRAY);
+            views.add(this);
+            card.addHierarchyListener(e -> {
+                if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !card.isDisplayable()) {
+                    release(); // the window was disposed
+                }
+            });
+        }
+
+        FlashcardSet deck() {
+            return deck;
+        }
+
+        QuizSession session() {
+            return session;
+        }
+
+        boolean hasCards() {
+            return session != null && session.size() > 0;
+        }
+
+        void show(FlashcardSet deck, QuizSession session) {
+            if (deck != this.deck) release();
+            this.deck = deck;
+            this.session = session;
+            showFront();
+        }
+
+        ReviewScheduler scheduler() {
+            return state().scheduler();
+        }
+
+        AttemptLog attempts() {
+            return state().attempts();
+        }
+
+        private DeckState state() {
+            if (state == null) {
+                state = deckStates.computeIfAbsent(deck, DeckState::new);
+                state.views++;
+            }
+            return state;
+        }
+
+        private void release() { // closes the deck's logs if no other window has them
+            if (state == null) return;
+            if (--state.views == 0) {
+                deckStates.remove(deck);
+                state.close();
+            }
+            state = null;
+        }
+
+        String term() { // of the card at the cursor, as the window shows it
+            update();
+            return session.card().getQuestion();
+        }
+
+        // Moves the session onto the deck's latest snapshot if the deck changed, and repaints. A
+        // shuffled session keeps its snapshot until the pass is over (the cursor is back on the first
+        // card), since a new deck size means a new order and it would skip or repeat cards.
+        void update() {
+            if (deck != null && session != null && session.getDeck().getVersion() != deck.getVersion()
+                    && (session.getSeed() == 0 || session.getPosition() == 0)) {
+                session.rebase(deck.snapshot());
+            }
+
+            if (hasCards()) {
+                QA current = session.card();
+                if (session != served || session.getPosition() != servedPosition) { // a new card, not a flip or a refresh
+                    Metrics.CARDS_SERVED.increment();
+                    served = session;
+                    servedPosition = session.getPosition();
+                }
+                card.setText(showQuestion != answerFirst ? current.getQuestion() : current.getAnswer());
+                progress.setText((session.getPosition()+1) + " / " + session.size());
+            } else {
+                progress.setText("0 / 0");
+                card.setText("No cards available");
+            }
+        }
+
+        void catchUp() { // onto the deck's latest snapshot, even in the middle of a shuffled pass
+            if (deck != null && session != null) session.rebase(deck.snapshot());
+        }
+
+        void showFront() {
+            showQuestion = true;
+            update();
+        }
+
+        void next() {
+            if (!hasCards()) return;
+            session.next();
+            showFront();
+        }
+
+        void previous() {
+            if (!hasCards()) return;
+            session.previous();
+            showFront();
+        }
+
+        void flip() {
+            if (!hasCards()) return;
+            showQuestion = !showQuestion;
+            update();
+        }
+
+        void seek(int deckIndex) { // shows the card at this deck index, wherever the session has it
+            if (!hasCards()) return;
+            session.seek(deckIndex);
+            showFront();
+        }
+
+        boolean answer(AnswerGrader.Grade grade) { // true if that finished the pass
+            boolean finished = session.answer(grade);
+            showFront();
+            return finished;
+        }
+    }
+
+    // A panel whose background depends only on its size. The background is rendered once into an
+    // image and reused until the panel is resized (or moved to a screen with another scale), so the
+    // frequent repaints from button animations only cost one image copy.
+    private abstract static class CachedSurfacePanel extends JPanel {
+        private Image surface;
+        private int surfaceW, surfaceH;
+
+        protected abstract void paintSurface(Graphics2D g2, int w, int h);
+
         @Override
         protected void paintComponent(Graphics g) {
+            long start = System.nanoTime();
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g.create();
             int w = getWidth();
             int h = getHeight();
+            if (w <= 0 || h <= 0) return;
 
-            Color top = new Color(0,180,255);
-            Color middle = new Color(0,120,200);
-            Color bottom = new Color(0,80,180);
+            Graphics2D g2 = (Graphics2D) g.create();
+            java.awt.geom.AffineTransform tx = g2.getTransform();
+            int pixelW = (int) Math.ceil(w * tx.getScaleX()); // device pixels, for HiDPI screens
+            int pixelH = (int) Math.ceil(h * tx.getScaleY());
+
+            if (surface == null || surfaceW != pixelW || surfaceH != pixelH) {
+                if (surface != null) surface.flush();
+                surface = render(g2.getDeviceConfiguration(), w, h, pixelW, pixelH);
+                surfaceW = pixelW;
+                surfaceH = pixelH;
+            }
 
-            GradientPaint gp1 = new GradientPaint(0,0,top,0,h/2f,middle);
-            GradientPaint gp2 = new GradientPaint(0,h/2f,middle,0,h,bottom);
+            g2.drawImage(surface, 0, 0, w, h, null);
+            g2.dispose();
+            Metrics.PAINT.since(start);
+        }
+
+        private Image render(GraphicsConfiguration gc, int w, int h, int pixelW, int pixelH) {
+            java.awt.image.BufferedImage image = gc != null
+                    ? gc.createCompatibleImage(pixelW, pixelH, Transparency.TRANSLUCENT)
+                    : new java.awt.image.BufferedImage(pixelW, pixelH, java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = image.createGraphics();
+            g2.scale((double) pixelW / w, (double) pixelH / h);
+            paintSurface(g2, w, h);
+            g2.dispose();
+            return image;
+        }
+    }
+
+    private static class GradientPanel extends CachedSurfacePanel {
+        private static final Color TOP = new Color(0,180,255);
+        private static final Color MIDDLE = new Color(0,120,200);
+        private static final Color BOTTOM = new Color(0,80,180);
+
+        @Override
+        protected void paintSurface(Graphics2D g2, int w, int h) {
+            GradientPaint gp1 = new GradientPaint(0,0,TOP,0,h/2f,MIDDLE);
+            GradientPaint gp2 = new GradientPaint(0,h/2f,MIDDLE,0,h,BOTTOM);
 
             g2.setPaint(gp1);
             g2.fillRect(0,0,w,h/2);
             g2.setPaint(gp2);
             g2.fillRect(0,h/2,w,h);
+        }
+    }
 
-            g2.dispose();
+    // White rounded card behind the question text in the review, quiz and edit views.
+    private static class CardPanel extends CachedSurfacePanel {
+        private static final Color LIGHT = new Color(255,255,255);
+        private static final Color DARK = new Color(230,230,230);
+        private static final Color SHADOW = new Color(0,0,0,40);
+
+        CardPanel() {
+            setOpaque(false); // the rounded corners show the window behind
+        }
+
+        @Override
+        protected void paintSurface(Graphics2D g2, int w, int h) {
+            GradientPaint gp = new GradientPaint(0, 0, LIGHT, 0, h, DARK);
+            g2.setPaint(gp);
+            g2.fillRoundRect(0, 0, w, h, 20, 20);
+
+            g2.setColor(SHADOW);
+            g2.fillRoundRect(4,4,w-8,h-8,20,20);
         }
     }
 
-    class AnimatedButton extends JButton {
+    class AnimatedButton extends JButton implements AnimationClock.Animated {
 
         private float scale = 1f;
         private Color gradientTop = new Color(255, 140, 0);
         private Color gradientBottom = new Color(255, 0, 102);
 
         private boolean hover = false;
-        private Timer animationTimer;
 
         public AnimatedButton(String text) {
             super(text);
@@ -881,21 +1261,33 @@ public class GUI {
             setCursor(new Cursor(Cursor.HAND_CURSOR));
             setFont(new Font("Helvetica", Font.BOLD, 18));
 
-            animationTimer = new Timer(16, e -> animate());
-            animationTimer.start();
-
             addMouseListener(new java.awt.event.MouseAdapter() {
-                @Override public void mouseEntered(java.awt.event.MouseEvent e) { hover = true; }
-                @Override public void mouseExited(java.awt.event.MouseEvent e) { hover = false; }
-                @Override public void mousePressed(java.awt.event.MouseEvent e) { scale = 0.97f; }
-                @Override public void mouseReleased(java.awt.event.MouseEvent e) { scale = 1f; }
+                @Override public void mouseEntered(java.awt.event.MouseEvent e) { hover = true; wake(); }
+                @Override public void mouseExited(java.awt.event.MouseEvent e) { hover = false; wake(); }
+                @Override public void mousePressed(java.awt.event.MouseEvent e) { scale = 0.97f; wake(); }
+                @Override public void mouseReleased(java.awt.event.MouseEvent e) { scale = 1f; wake(); }
             });
         }
 
-        private void animate() {
+        private void wake() {
+            repaint();
+            AnimationClock.start(this);
+        }
+
+        @Override
+        public boolean tick() {
             float target = hover ? 1.05f : 1f;
             scale += (target - scale) * 0.1f;
+            boolean settled = Math.abs(target - scale) < 0.001f; // under a pixel at any button size
+            if (settled) scale = target;
             repaint();
+            return !settled;
+        }
+
+        @Override
+        public void removeNotify() {
+            AnimationClock.stop(this); // window closed mid-animation
+            super.removeNotify();
         }
 
         @Override
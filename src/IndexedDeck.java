@@ -0,0 +1,26 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+// A deck file that can be read card by card in any order, as opposed to a CSV, which can only be
+// scanned: a plain indexed deck (.cdeck, BinaryDeck) or a block-compressed one (.cdeckz,
+// CompressedDeck). The format is decided by the file extension. Not thread-safe; open one per reader.
+public interface IndexedDeck extends Closeable
+{
+    int size();
+
+    String term(int index);
+
+    String info(int index);
+
+    String format(); // "cdeck" or "cdeckz", for LoadStats
+
+    static boolean isIndexed(String path)
+    {
+        return BinaryDeck.isBinary(path) || CompressedDeck.isCompressed(path);
+    }
+
+    static IndexedDeck open(String path) throws IOException
+    {
+        return CompressedDeck.isCompressed(path) ? CompressedDeck.open(path) : BinaryDeck.open(path);
+    }
+}
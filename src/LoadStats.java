@@ -0,0 +1,52 @@
+public class LoadStats
+{
+    private final String source; // which loader produced these numbers
+    private final long rows; // cards handed to the set
+    private final long bytes; // bytes scanned
+    private final long nanos; // wall time of the load
+
+    public LoadStats(String source, long rows, long bytes, long nanos)
+    {
+        this.source = source;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    public double rowsPerSecond()
+    {
+        return nanos == 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    public double bytesPerSecond()
+    {
+        return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %d rows, %d bytes in %.1f ms (%.0f rows/s, %.1f MB/s)",
+                source, rows, bytes, nanos / 1e6, rowsPerSecond(), bytesPerSecond() / (1024 * 1024));
+    }
+}
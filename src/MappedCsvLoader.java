@@ -0,0 +1,289 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class MappedCsvLoader
+{
+    private static final long WINDOW = 64L * 1024 * 1024; // bytes mapped at once, so decks larger than 2GB still stream
+
+    public interface RowHandler
+    {
+        void row(Row row);
+    }
+
+    // A view of one "term,info" line inside the mapped file. The same object is reused for
+    // every line, so it is only valid inside RowHandler.row; fields become Strings on request.
+    public static class Row
+    {
+        private MappedByteBuffer buffer;
+        private long base; // file offset of the mapped window
+        private int termStart, termEnd, infoStart, infoEnd;
+        private byte[] scratch = new byte[256];
+
+        public long position() // file offset at the end of this row, for progress reporting
+        {
+            return base + infoEnd;
+        }
+
+        public int termLength()
+        {
+            return termEnd - termStart;
+        }
+
+        public int infoLength()
+        {
+            return infoEnd - infoStart;
+        }
+
+        public String term()
+        {
+            return decode(termStart, termEnd);
+        }
+
+        public String info()
+        {
+            return decode(infoStart, infoEnd);
+        }
+
+        public boolean termIsAscii() // no byte of the term is part of a multi-byte character
+        {
+            for(int i = termStart; i < termEnd; i++)
+            {
+                if(buffer.get(i) < 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public void copyTerm(byte[] dst, int offset) // raw UTF-8 bytes, no String in between
+        {
+            buffer.get(termStart, dst, offset, termLength());
+        }
+
+        public void copyInfo(byte[] dst, int offset)
+        {
+            buffer.get(infoStart, dst, offset, infoLength());
+        }
+
+        public long termHash() // hash(term()), read straight from the mapped bytes
+        {
+            return hash(buffer, termStart, termEnd);
+        }
+
+        public long infoHash()
+        {
+            return hash(buffer, infoStart, infoEnd);
+        }
+
+        private String decode(int start, int end)
+        {
+            int length = end - start;
+            if(scratch.length < length)
+            {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes of s; a Row hashes its fields the same way without
+    // decoding them, so rows can be compared with cards already in memory.
+    public static long hash(String s)
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        long h = 0xCBF29CE484222325L;
+        for(byte b : bytes)
+        {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long hash(MappedByteBuffer buffer, int start, int end)
+    {
+        long h = 0xCBF29CE484222325L;
+        for(int i = start; i < end; i++)
+        {
+            h = (h ^ (buffer.get(i) & 0xFF)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // Streams every card line of a CSV deck through the handler. Lines are split on the first
+    // comma and both sides are trimmed, matching the old BufferedReader/split(",", 2) loader;
+    // blank lines and lines without a comma are skipped.
+    public static LoadStats load(String path, RowHandler handler) throws IOException
+    {
+        long start = System.nanoTime();
+        long rows = 0;
+        long fileSize;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            fileSize = channel.size();
+            long position = 0;
+            long window = WINDOW;
+            Row row = new Row();
+
+            while(position < fileSize)
+            {
+                long length = Math.min(window, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean lastWindow = position + length == fileSize;
+                int limit = (int) length;
+                row.buffer = buffer;
+                row.base = position;
+
+                int lineStart = 0;
+                if(position == 0 && limit >= 3 && buffer.get(0) == (byte) 0xEF
+                        && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF)
+                {
+                    lineStart = 3; // UTF-8 byte order mark
+                }
+
+                int comma = -1;
+                int i = lineStart;
+                while(i < limit)
+                {
+                    if(i + 8 <= limit)
+                    {
+                        long word = buffer.getLong(i);
+                        if(!hasByte(word, NEWLINES) && (comma >= 0 || !hasByte(word, COMMAS)))
+                        {
+                            i += 8; // nothing in these 8 bytes can end a line or split it
+                            continue;
+                        }
+                    }
+
+                    byte b = buffer.get(i);
+                    if(b == '\n')
+                    {
+                        if(split(row, lineStart, comma, i))
+                        {
+                            handler.row(row);
+                            rows++;
+                        }
+                        lineStart = i + 1;
+                        comma = -1;
+                    }
+
+                    else if(b == ',' && comma < 0)
+                    {
+                        comma = i;
+                    }
+                    i++;
+                }
+
+                if(lastWindow)
+                {
+                    if(lineStart < limit && split(row, lineStart, comma, limit))
+                    {
+                        handler.row(row);
+                        rows++;
+                    }
+                    position = fileSize;
+                }
+
+                else if(lineStart == 0)
+                {
+                    window = Math.min(window * 2, Integer.MAX_VALUE); // one line longer than the window
+                }
+
+                else
+                {
+                    position += lineStart; // remap from the start of the unfinished line
+                }
+            }
+        }
+
+        return new LoadStats("mapped", rows, fileSize, System.nanoTime() - start);
+    }
+
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL; // '\n' in every byte
+    private static final long COMMAS = 0x2C2C2C2C2C2C2C2CL; // ',' in every byte
+
+    private static boolean hasByte(long word, long pattern) // SWAR test for a matching byte anywhere in the word
+    {
+        long x = word ^ pattern;
+        return ((x - 0x0101010101010101L) & ~x & 0x8080808080808080L) != 0;
+    }
+
+    // Sets the row's field bounds for the line [start, end); returns false if the line holds no card.
+    private static boolean split(Row row, int start, int comma, int end)
+    {
+        if(comma < 0)
+        {
+            return false;
+        }
+
+        row.termStart = start;
+        row.termEnd = comma;
+        row.infoStart = comma + 1;
+        row.infoEnd = end;
+
+        // same whitespace rule as String.trim(): every byte <= ' ' (UTF-8 never uses those inside a character)
+        while(row.termStart < row.termEnd && (row.buffer.get(row.termStart) & 0xFF) <= ' ') row.termStart++;
+        while(row.termEnd > row.termStart && (row.buffer.get(row.termEnd - 1) & 0xFF) <= ' ') row.termEnd--;
+        while(row.infoStart < row.infoEnd && (row.buffer.get(row.infoStart) & 0xFF) <= ' ') row.infoStart++;
+        while(row.infoEnd > row.infoStart && (row.buffer.get(row.infoEnd - 1) & 0xFF) <= ' ') row.infoEnd--;
+        return true;
+    }
+
+    // The BufferedReader path FlashcardSet.loadData used before, kept so the two can be compared.
+    public static LoadStats loadBuffered(String path, RowHandlerStrings handler) throws IOException
+    {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(path, StandardCharsets.UTF_8)))
+        {
+            String line = "";
+
+            while((line = reader.readLine()) != null)
+            {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.split(",", 2);
+                if (parts.length < 2) continue;
+                handler.row(parts[0].trim(), parts[1].trim());
+                rows++;
+            }
+        }
+
+        return new LoadStats("buffered", rows, new java.io.File(path).length(), System.nanoTime() - start);
+    }
+
+    public interface RowHandlerStrings
+    {
+        void row(String term, String info);
+    }
+
+    // usage: java MappedCsvLoader <deck.csv> [rounds]
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1)
+        {
+            System.out.println("usage: java MappedCsvLoader <deck.csv> [rounds]");
+            return;
+        }
+
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long[] sink = new long[1];
+
+        for(int r = 0; r < rounds; r++)
+        {
+            System.out.println(loadBuffered(args[0], (term, info) -> sink[0] += term.length() + info.length()));
+            System.out.println(load(args[0], row -> sink[0] += row.term().length() + row.info().length()));
+            System.out.println(load(args[0], row -> sink[0] += row.termLength() + row.infoLength()) + " [no Strings]");
+        }
+
+        System.out.println("(checksum " + sink[0] + ")");
+    }
+}
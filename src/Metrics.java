@@ -0,0 +1,224 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Counters and latency timers for the hot paths, cheap enough to leave on everywhere: counters
+// are LongAdders, and a timer adds up count and total time, keeps the maximum and counts
+// samples in power-of-two buckets for rough percentiles, with no locks and no allocation.
+// exportJmx() publishes them as MBeans under "cognistudy:" so JConsole (or any JMX client) can
+// watch a running app; the Counters bean also reads the deck cache, saver and watcher stats.
+public class Metrics
+{
+    public static final Timer LOAD = new Timer(); // whole-deck loads
+    public static final Timer SAVE = new Timer(); // whole-deck writes, including journal compactions
+    public static final Timer SEARCH = new Timer(); // substring searches over a deck
+    public static final Timer GRADE = new Timer(); // typed answers graded
+    public static final Timer PAINT = new Timer(); // card and background panel paints
+    public static final Timer REQUEST = new Timer(); // quiz server requests, handler to last byte sent
+
+    public static final LongAdder ROWS_PARSED = new LongAdder(); // card rows read by loads
+    public static final LongAdder BYTES_PARSED = new LongAdder();
+    public static final LongAdder CARDS_SERVED = new LongAdder(); // cards put in front of a student: QuizServer questions, cards a window moves to
+
+    private static boolean exported = false;
+
+    public interface TimerMBean
+    {
+        long getCount();
+        double getTotalMillis();
+        double getMeanMicros();
+        double getMaxMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getPerSecond(); // samples per second since start (or the last reset)
+        void reset();
+    }
+
+    public static class Timer implements TimerMBean
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(64); // bucket b: samples below 2^b ns
+        private volatile long since = System.nanoTime();
+
+        public void record(long nanos)
+        {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos))));
+        }
+
+        public void since(long start) // records the time from start (a System.nanoTime()) to now
+        {
+            record(System.nanoTime() - start);
+        }
+
+        public long getCount()
+        {
+            return count.sum();
+        }
+
+        public double getTotalMillis()
+        {
+            return total.sum() / 1e6;
+        }
+
+        public double getMeanMicros()
+        {
+            long n = count.sum();
+            return n == 0 ? 0 : total.sum() / 1e3 / n;
+        }
+
+        public double getMaxMicros()
+        {
+            return max.get() / 1e3;
+        }
+
+        public double getP50Micros()
+        {
+            return percentile(0.5);
+        }
+
+        public double getP99Micros()
+        {
+            return percentile(0.99);
+        }
+
+        public double getPerSecond()
+        {
+            double seconds = (System.nanoTime() - since) / 1e9;
+            return seconds <= 0 ? 0 : count.sum() / seconds;
+        }
+
+        public void reset()
+        {
+            count.reset();
+            total.reset();
+            max.reset();
+            for(int b = 0; b < 64; b++)
+            {
+                buckets.set(b, 0);
+            }
+            since = System.nanoTime();
+        }
+
+        private double percentile(double q) // upper bound of the bucket holding the q-th sample
+        {
+            long n = 0;
+            for(int b = 0; b < 64; b++)
+            {
+                n += buckets.get(b);
+            }
+
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for(int b = 0; b < 64 && n > 0; b++)
+            {
+                seen += buckets.get(b);
+                if(seen >= rank)
+                {
+                    return Math.min(Math.pow(2, b), max.get()) / 1e3;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.ROOT, "%d in %.1f ms (mean %.1f us, p99 %.1f us, max %.1f us)",
+                    getCount(), getTotalMillis(), getMeanMicros(), getP99Micros(), getMaxMicros());
+        }
+    }
+
+    public interface CountersMBean
+    {
+        long getRowsParsed();
+        long getBytesParsed();
+        long getCardsServed();
+        long getCacheHits();
+        long getCacheMisses();
+        long getCacheEvictions();
+        int getCachedDecks();
+        long getCacheBytes();
+        long getSaveRequests();
+        long getSavesCoalesced();
+        long getSaveFailures();
+        long getFileMerges();
+        long getRowsMerged();
+        int getActiveAnimations();
+    }
+
+    private static class Counters implements CountersMBean
+    {
+        public long getRowsParsed() { return ROWS_PARSED.sum(); }
+        public long getBytesParsed() { return BYTES_PARSED.sum(); }
+        public long getCardsServed() { return CARDS_SERVED.sum(); }
+        public long getCacheHits() { return DeckCache.shared().getHits(); }
+        public long getCacheMisses() { return DeckCache.shared().getMisses(); }
+        public long getCacheEvictions() { return DeckCache.shared().getEvictions(); }
+        public int getCachedDecks() { return DeckCache.shared().getSize(); }
+        public long getCacheBytes() { return DeckCache.shared().getBytes(); }
+        public long getSaveRequests() { return DeckSaver.shared().getRequests(); }
+        public long getSavesCoalesced() { return DeckSaver.shared().getCoalesced(); }
+        public long getSaveFailures() { return DeckSaver.shared().getFailures(); }
+        public long getFileMerges() { return DeckWatcher.shared().getMerges(); }
+        public long getRowsMerged() { return DeckWatcher.shared().getRowsMerged(); }
+        public int getActiveAnimations() { return AnimationClock.activeCount(); }
+    }
+
+    public static void loaded(LoadStats stats) // a whole deck was read
+    {
+        if(stats != null)
+        {
+            LOAD.record(stats.getNanos());
+            ROWS_PARSED.add(stats.getRows());
+            BYTES_PARSED.add(stats.getBytes());
+        }
+    }
+
+    // Registers the beans with the platform MBean server; later calls do nothing.
+    public static synchronized void exportJmx()
+    {
+        if(exported)
+        {
+            return;
+        }
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            register(server, "Load", LOAD);
+            register(server, "Save", SAVE);
+            register(server, "Search", SEARCH);
+            register(server, "Grade", GRADE);
+            register(server, "Paint", PAINT);
+            register(server, "Request", REQUEST);
+            server.registerMBean(new StandardMBean(new Counters(), CountersMBean.class), new ObjectName("cognistudy:type=Counters"));
+            exported = true;
+        }
+
+        catch (JMException e) // the app works without them
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private static void register(MBeanServer server, String name, Timer timer) throws JMException
+    {
+        server.registerMBean(new StandardMBean(timer, TimerMBean.class), new ObjectName("cognistudy:type=Timer,name=" + name));
+    }
+
+    public static String summary() // one line, for logs
+    {
+        return "load " + LOAD + ", save " + SAVE + ", search " + SEARCH + ", grade " + GRADE + ", paint " + PAINT + ", request " + REQUEST;
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Load test for QuizServer: many students, each with its own session, fetching a question and
+// answering it (right about two times in three) over and over for a fixed time. Students are
+// asynchronous request chains rather than threads, so thousands of them fit in one client JVM.
+// Without --url it starts a server in this JVM on a generated deck. Prints throughput, latency
+// percentiles over every request, and the error count; exits 1 if any request failed.
+//
+// usage: java QuizLoadTest [--url http://host:port] [--deck NAME] [--sessions N] [--seconds S] [--think MS]
+public class QuizLoadTest
+{
+    private static final Pattern SESSION = Pattern.compile("\"session\": \"([0-9a-f]+)\"");
+    private static final Pattern PROMPT = Pattern.compile("\"prompt\": \"(.*)\"\\}");
+
+    private final HttpClient client;
+    private final String url;
+    private final String deck;
+    private final long deadline; // System.nanoTime()
+    private final long thinkMillis;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong answers = new AtomicLong();
+
+    // One student's request chain; only one of its requests is in flight at a time.
+    private class Student
+    {
+        long[] latencies = new long[1024]; // nanos
+        int count = 0;
+        String session;
+
+        void add(long nanos)
+        {
+            if(count == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        CompletableFuture<Void> run()
+        {
+            if(thinkMillis > 0) // students arrive spread over one think time, not all in the same millisecond
+            {
+                Executor later = CompletableFuture.delayedExecutor((long) (Math.random() * thinkMillis), TimeUnit.MILLISECONDS);
+                return CompletableFuture.supplyAsync(() -> null, later).thenCompose(x -> begin());
+            }
+            return begin();
+        }
+
+        private CompletableFuture<Void> begin()
+        {
+            return send(HttpRequest.newBuilder(URI.create(url + "/sessions?deck=" + deck)).POST(HttpRequest.BodyPublishers.noBody()))
+                    .thenCompose(body -> {
+                        Matcher m = SESSION.matcher(body);
+                        if(!m.find())
+                        {
+                            throw new IllegalStateException("no session in " + body);
+                        }
+                        session = m.group(1);
+                        return round();
+                    });
+        }
+
+        private CompletableFuture<Void> round()
+        {
+            if(System.nanoTime() >= deadline)
+            {
+                return send(HttpRequest.newBuilder(URI.create(url + "/sessions/" + session)).DELETE()).thenApply(body -> null);
+            }
+
+            return send(HttpRequest.newBuilder(URI.create(url + "/sessions/" + session + "/question")).GET())
+                    .thenCompose(body -> {
+                        Matcher m = PROMPT.matcher(body);
+                        String prompt = m.find() ? m.group(1) : "";
+                        // the generated deck answers "info N" with "term N"; elsewhere every answer is a guess
+                        String attempt = prompt.startsWith("info ") && Math.random() < 0.67 ? "term " + prompt.substring(5) : "no idea";
+                        return send(HttpRequest.newBuilder(URI.create(url + "/sessions/" + session + "/answer"))
+                                .POST(HttpRequest.BodyPublishers.ofString(attempt, StandardCharsets.UTF_8)));
+                    })
+                    .thenCompose(body -> {
+                        answers.incrementAndGet();
+                        if(thinkMillis == 0)
+                        {
+                            return round();
+                        }
+                        Executor later = CompletableFuture.delayedExecutor(thinkMillis, TimeUnit.MILLISECONDS);
+                        return CompletableFuture.supplyAsync(() -> null, later).thenCompose(x -> round());
+                    });
+        }
+
+        private CompletableFuture<String> send(HttpRequest.Builder request)
+        {
+            long start = System.nanoTime();
+            return client.sendAsync(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                    .thenApply(response -> {
+                        add(System.nanoTime() - start);
+                        if(response.statusCode() != 200)
+                        {
+                            errors.incrementAndGet();
+                        }
+                        return response.body();
+                    });
+        }
+    }
+
+    public QuizLoadTest(String url, String deck, long seconds, long thinkMillis)
+    {
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(Background.executor("quiz-load")).build();
+        this.url = url;
+        this.deck = deck;
+        this.deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        this.thinkMillis = thinkMillis;
+    }
+
+    // Runs every student to the deadline; returns the latencies of all their requests, sorted.
+    public long[] run(int sessions)
+    {
+        List<Student> students = new ArrayList<>();
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for(int i = 0; i < sessions; i++)
+        {
+            Student s = new Student();
+            students.add(s);
+            running.add(s.run().exceptionally(e -> {
+                errors.incrementAndGet();
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+
+        int total = 0;
+        for(Student s : students)
+        {
+            total += s.count;
+        }
+
+        long[] all = new long[total];
+        int at = 0;
+        for(Student s : students)
+        {
+            System.arraycopy(s.latencies, 0, all, at, s.count);
+            at += s.count;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static double percentileMillis(long[] sorted, double q)
+    {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))] / 1e6;
+    }
+
+    private static Path generatedDeck(int cards) throws IOException
+    {
+        Path dir = Files.createTempDirectory("quiz-load");
+        StringBuilder csv = new StringBuilder();
+        for(int i = 0; i < cards; i++)
+        {
+            csv.append("term ").append(i).append(",info ").append(i).append('\n');
+        }
+        Path deck = dir.resolve("Load.csv");
+        Files.writeString(deck, csv);
+        return deck;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        // HttpClient completes responses asynchronously on the common pool, and with fewer than two
+        // workers there CompletableFuture starts a new thread per completion instead; on a small
+        // machine that, not the server, would be what the test measures
+        if(System.getProperty("java.util.concurrent.ForkJoinPool.common.parallelism") == null)
+        {
+            System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism",
+                    String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors())));
+        }
+
+        String url = null;
+        String deck = "Load";
+        int sessions = 2000;
+        long seconds = 20;
+        long think = 0;
+
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch(args[i])
+            {
+                case "--url": url = args[i + 1]; break;
+                case "--deck": deck = args[i + 1]; break;
+                case "--sessions": sessions = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Long.parseLong(args[i + 1]); break;
+                case "--think": think = Long.parseLong(args[i + 1]); break;
+                default:
+                    System.err.println("usage: java QuizLoadTest [--url http://host:port] [--deck NAME] [--sessions N] [--seconds S] [--think MS]");
+                    System.exit(2);
+            }
+        }
+
+        QuizServer server = null;
+        if(url == null)
+        {
+            Path generated = generatedDeck(5000);
+            server = new QuizServer(List.of(generated.toString()));
+            url = "http://localhost:" + server.start(0);
+            deck = "Load";
+        }
+
+        System.out.printf(Locale.ROOT, "%d sessions on %s for %d s, think time %d ms%n", sessions, url, seconds, think);
+        long start = System.nanoTime();
+        QuizLoadTest test = new QuizLoadTest(url, deck, seconds, think);
+        long[] latencies = test.run(sessions);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%d requests, %d answers in %.1f s: %.0f requests/s%n", latencies.length, test.answers.get(),
+                elapsed, latencies.length / elapsed);
+        System.out.printf(Locale.ROOT, "latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n", percentileMillis(latencies, 0.5),
+                percentileMillis(latencies, 0.9), percentileMillis(latencies, 0.99), percentileMillis(latencies, 0.999),
+                percentileMillis(latencies, 1.0));
+        if(server != null)
+        {
+            System.out.println("server: " + Metrics.REQUEST);
+            server.stop();
+        }
+        System.out.println(test.errors.get() + " errors");
+        System.exit(test.errors.get() == 0 ? 0 : 1);
+    }
+}
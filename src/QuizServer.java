@@ -0,0 +1,492 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Quizzes a whole classroom from one machine over HTTP (the JDK's built-in server). Decks are
+// loaded once and shared by every session; a session only remembers where its student is in the
+// deck and the score (a QuizSession, a few dozen bytes whatever the deck size). Questions and
+// answer keys are read from a snapshot of the deck, so serving and grading take no deck lock,
+// and grading uses a pool of graders, so sessions never queue behind each other. Requests run
+// on Background executors: a virtual thread each on Java 21+. Answers are queued per deck and
+// written to its AttemptLog in batches, FLUSH_MILLIS apart; request latencies go to
+// Metrics.REQUEST (exported over JMX).
+//
+// usage: java QuizServer [--port N] <deck|dir>...
+//   GET    /decks                      {"decks": [{"name", "cards"}...]}
+//   POST   /sessions?deck=NAME         starts a quiz: {"session", "deck", "cards"}
+//   GET    /sessions/ID/question       the card to answer: {"position", "of", "prompt"}
+//   POST   /sessions/ID/answer         body is the typed answer: {"grade", "expected", "score", "answered", "done"}
+//   GET    /sessions/ID                {"deck", "position", "of", "score", "answered"}
+//   DELETE /sessions/ID                ends the session
+public class QuizServer
+{
+    private static final long IDLE_MILLIS = 30 * 60 * 1000; // sessions untouched this long are dropped
+    private static final int MAX_ANSWER_BYTES = 16 * 1024;
+    private static final int MAX_SESSIONS = 100_000; // more are turned away (503) until some end or go idle
+    private static final long FLUSH_MILLIS = 250; // answers not yet in the attempt logs, at most this old
+
+    private final Map<String, Deck> decks = new LinkedHashMap<>(); // by name; fixed once the server starts
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<AnswerGrader> graders = new ConcurrentLinkedQueue<>(); // graders are not thread-safe
+    private final SecureRandom random = new SecureRandom(); // session ids must not be guessable
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> { // idle sessions, attempt logs
+        Thread t = new Thread(r, "quiz-session-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+    private HttpServer server;
+
+    // The JDK server reads these once, when it first starts. Without nodelay every small reply
+    // waits out the client's delayed ACK (about 40 ms); and it closes keep-alive connections
+    // beyond a couple of hundred idle ones, where a classroom keeps thousands open.
+    static
+    {
+        defaultProperty("sun.net.httpserver.nodelay", "true");
+        defaultProperty("sun.net.httpserver.maxIdleConnections", "10000");
+    }
+
+    private static void defaultProperty(String key, String value)
+    {
+        if(System.getProperty(key) == null)
+        {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static class Deck
+    {
+        final String name;
+        final FlashcardSet set;
+        final AttemptLog attempts;
+        final ConcurrentLinkedQueue<Attempt> answered = new ConcurrentLinkedQueue<>(); // not in attempts yet
+
+        Deck(String name, FlashcardSet set, AttemptLog attempts)
+        {
+            this.name = name;
+            this.set = set;
+            this.attempts = attempts;
+        }
+    }
+
+    // One student's passes through a deck, each in its own shuffled order. A pass keeps the
+    // snapshot it started with, so edits to the deck never move a student's cards under them;
+    // the next pass sees them.
+    private static class Session
+    {
+        final Deck deck;
+        QuizSession quiz;
+        long askedAt = System.nanoTime(); // when the current card was served
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(Deck deck)
+        {
+            this.deck = deck;
+            this.quiz = QuizSession.shuffled(deck.set.snapshot());
+        }
+
+        QA current() throws HttpError
+        {
+            QA card = quiz.card();
+            if(card == null) // every card was removed since the pass began
+            {
+                throw new HttpError(409, "deck " + deck.name + " has no cards");
+            }
+            return card;
+        }
+    }
+
+    private static class Attempt
+    {
+        final String term;
+        final AnswerGrader.Grade grade;
+        final long millis;
+        final long time;
+
+        Attempt(String term, AnswerGrader.Grade grade, long millis, long time)
+        {
+            this.term = term;
+            this.grade = grade;
+            this.millis = millis;
+            this.time = time;
+        }
+    }
+
+    private static class HttpError extends Exception
+    {
+        final int status;
+
+        HttpError(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // Loads the decks (files, or every deck in a folder); two decks with one name keep the first.
+    public QuizServer(List<String> paths) throws IOException
+    {
+        for(String path : CLI.decks(paths))
+        {
+            String name = new File(path).getName();
+            name = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+            if(!decks.containsKey(name))
+            {
+                FlashcardSet set = CLI.load(path);
+                decks.put(name, new Deck(name, set, AttemptLog.open(path)));
+                DeckWatcher.shared().watch(set); // edits to the files reach new passes
+            }
+        }
+    }
+
+    public int start(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(port), 4096);
+        server.setExecutor(Background.executor("quiz-server"));
+        server.createContext("/decks", ex -> handle(ex, this::listDecks));
+        server.createContext("/sessions", ex -> handle(ex, this::route));
+        server.start();
+        sweeper.scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.MINUTES);
+        sweeper.scheduleWithFixedDelay(this::writeAttempts, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        return server.getAddress().getPort();
+    }
+
+    public void stop()
+    {
+        server.stop(1);
+        sweeper.shutdown();
+        try
+        {
+            sweeper.awaitTermination(10, TimeUnit.SECONDS); // a batch being written finishes before the logs close
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        writeAttempts();
+        for(Deck deck : decks.values())
+        {
+            try
+            {
+                deck.attempts.close();
+            }
+
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public int sessionCount()
+    {
+        return sessions.size();
+    }
+
+    private interface Handler
+    {
+        String handle(HttpExchange ex) throws IOException, HttpError;
+    }
+
+    private void handle(HttpExchange ex, Handler handler) throws IOException
+    {
+        long start = System.nanoTime();
+        int status = 200;
+        String body;
+        try
+        {
+            body = handler.handle(ex);
+        }
+
+        catch (HttpError e)
+        {
+            status = e.status;
+            body = "{\"error\": " + json(e.getMessage()) + "}";
+        }
+
+        catch (IOException e) // the request could not be read to the end
+        {
+            status = 500;
+            body = "{\"error\": " + json("could not read the request: " + e.getMessage()) + "}";
+        }
+
+        catch (RuntimeException e) // a bug; the student gets an error, the server keeps going
+        {
+            e.printStackTrace();
+            status = 500;
+            body = "{\"error\": \"internal error\"}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody())
+        {
+            out.write(bytes);
+        }
+        Metrics.REQUEST.since(start);
+    }
+
+    private String listDecks(HttpExchange ex) throws HttpError
+    {
+        method(ex, "GET");
+        List<String> list = new ArrayList<>();
+        for(Deck deck : decks.values())
+        {
+            list.add("{\"name\": " + json(deck.name) + ", \"cards\": " + deck.set.snapshot().getSize() + "}");
+        }
+        return "{\"decks\": [" + String.join(", ", list) + "]}";
+    }
+
+    private String route(HttpExchange ex) throws IOException, HttpError
+    {
+        String[] parts = ex.getRequestURI().getPath().split("/"); // "", "sessions", id, action
+        if(parts.length == 2)
+        {
+            method(ex, "POST");
+            return startSession(query(ex, "deck"));
+        }
+
+        Session session = sessions.get(parts[2]);
+        if(session == null)
+        {
+            throw new HttpError(404, "no session " + parts[2]);
+        }
+        session.lastUsed = System.currentTimeMillis();
+
+        String action = parts.length > 3 ? parts[3] : "";
+        if(action.equals("question"))
+        {
+            method(ex, "GET");
+            return question(session);
+        }
+
+        else if(action.equals("answer"))
+        {
+            method(ex, "POST");
+            return answer(session, new String(ex.getRequestBody().readNBytes(MAX_ANSWER_BYTES), StandardCharsets.UTF_8).trim());
+        }
+
+        else if(action.isEmpty() && ex.getRequestMethod().equals("DELETE"))
+        {
+            sessions.remove(parts[2]);
+            return "{}";
+        }
+
+        else if(action.isEmpty())
+        {
+            method(ex, "GET");
+            synchronized(session)
+            {
+                QuizSession quiz = session.quiz;
+                return "{\"deck\": " + json(session.deck.name) + ", \"position\": " + (quiz.getPosition() + 1) + ", \"of\": "
+                        + quiz.size() + ", \"score\": " + quiz.getScore() + ", \"answered\": " + quiz.getAnswered() + "}";
+            }
+        }
+        throw new HttpError(404, "unknown action " + action);
+    }
+
+    private String startSession(String name) throws HttpError
+    {
+        Deck deck = name == null ? null : decks.get(name);
+        if(deck == null)
+        {
+            throw new HttpError(404, "no deck " + name);
+        }
+
+        int size = deck.set.snapshot().getSize();
+        if(size == 0)
+        {
+            throw new HttpError(409, "deck " + name + " has no cards");
+        }
+
+        if(sessions.size() >= MAX_SESSIONS)
+        {
+            throw new HttpError(503, "too many quizzes in progress, try again later");
+        }
+
+        String id = Long.toHexString(random.nextLong() | Long.MIN_VALUE); // always 16 digits
+        sessions.put(id, new Session(deck));
+        return "{\"session\": " + json(id) + ", \"deck\": " + json(name) + ", \"cards\": " + size + "}";
+    }
+
+    private String question(Session session) throws HttpError
+    {
+        synchronized(session)
+        {
+            String prompt = session.current().getAnswer();
+            session.askedAt = System.nanoTime();
+            Metrics.CARDS_SERVED.increment();
+            return "{\"position\": " + (session.quiz.getPosition() + 1) + ", \"of\": " + session.quiz.size()
+                    + ", \"prompt\": " + json(prompt) + "}";
+        }
+    }
+
+    // Grades the answer to the current card and moves on; after the last card of a pass the
+    // next one starts in a new order with the deck as it is now.
+    private String answer(Session session, String attempt) throws HttpError
+    {
+        String expected;
+        AnswerGrader.Grade grade;
+        long millis;
+        String reply;
+        synchronized(session)
+        {
+            expected = session.current().getQuestion();
+            grade = grade(session.quiz.getDeck(), expected, attempt);
+            millis = (System.nanoTime() - session.askedAt) / 1_000_000;
+            boolean done = session.quiz.answer(grade);
+            reply = "{\"grade\": \"" + grade + "\", \"expected\": " + json(expected) + ", \"score\": " + session.quiz.getScore()
+                    + ", \"answered\": " + session.quiz.getAnswered() + ", \"done\": " + done + "}";
+            if(done)
+            {
+                session.quiz = QuizSession.shuffled(session.deck.set.snapshot());
+            }
+            session.askedAt = System.nanoTime();
+        }
+
+        session.deck.answered.offer(new Attempt(expected, grade, millis, System.currentTimeMillis()));
+        return reply;
+    }
+
+    private AnswerGrader.Grade grade(FlashcardSet.Snapshot deck, String expected, String attempt)
+    {
+        AnswerGrader grader = graders.poll();
+        if(grader == null)
+        {
+            grader = new AnswerGrader();
+        }
+
+        try
+        {
+            return grader.grade(attempt, expected, deck.answerKey(expected));
+        }
+
+        finally
+        {
+            graders.offer(grader);
+        }
+    }
+
+    private void sweep()
+    {
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        sessions.values().removeIf(s -> s.lastUsed < cutoff);
+    }
+
+    // Moves the queued answers into the attempt logs, one flush per deck.
+    private void writeAttempts()
+    {
+        for(Deck deck : decks.values())
+        {
+            if(deck.answered.isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                for(Attempt a = deck.answered.poll(); a != null; a = deck.answered.poll())
+                {
+                    deck.attempts.buffer(a.term, a.grade, a.millis, a.time);
+                }
+                deck.attempts.flush();
+            }
+
+            catch (IOException e) // the answers are lost from the history; the quiz goes on
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void method(HttpExchange ex, String expected) throws HttpError
+    {
+        if(!ex.getRequestMethod().equals(expected))
+        {
+            throw new HttpError(405, ex.getRequestMethod() + " not allowed here");
+        }
+    }
+
+    private static String query(HttpExchange ex, String key) // the first value of key, or null
+    {
+        String query = ex.getRequestURI().getRawQuery();
+        if(query == null)
+        {
+            return null;
+        }
+
+        for(String pair : query.split("&"))
+        {
+            int eq = pair.indexOf('=');
+            if(eq > 0 && pair.substring(0, eq).equals(key))
+            {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    static String json(String s) // s as a JSON string literal
+    {
+        StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\')
+            {
+                b.append('\\').append(c);
+            }
+
+            else if(c < 0x20)
+            {
+                b.append(String.format("\\u%04x", (int) c));
+            }
+
+            else
+            {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String> list = new ArrayList<>(List.of(args));
+        int port = 8080;
+        if(list.size() >= 2 && list.get(0).equals("--port"))
+        {
+            port = Integer.parseInt(list.get(1));
+            list = list.subList(2, list.size());
+        }
+
+        if(list.isEmpty())
+        {
+            System.err.println("usage: java QuizServer [--port N] <deck|dir>...");
+            System.exit(2);
+        }
+
+        QuizServer quiz = new QuizServer(list);
+        Metrics.exportJmx();
+        int bound = quiz.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(quiz::stop, "quiz-server-stop"));
+        System.out.println("Serving " + quiz.decks.keySet() + " on http://localhost:" + bound + "/");
+    }
+}
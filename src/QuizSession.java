@@ -0,0 +1,203 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+// One person's way through a deck: a cursor, the order the cards come in, and a score. The deck
+// is a FlashcardSet.Snapshot, which never changes, so any number of sessions read the same one
+// without locks or copies. The order is not stored: a session with a seed visits the cards in
+// a pseudo-random permutation computed on the fly by a small Feistel network keyed by the seed
+// (cycle-walking until the result lands inside the deck), so a session takes a few dozen bytes
+// however big the deck is, and shuffling one never reorders the deck for anybody else.
+// Seed 0 keeps deck order. A session is not thread-safe; give each window or student its own.
+public class QuizSession
+{
+    private static final int ROUNDS = 4;
+
+    private FlashcardSet.Snapshot deck;
+    private final long seed; // 0: deck order
+    private int size;
+    private int half; // bits in each half of a Feistel block; the block covers [0, 4^half)
+    private int position = 0; // cursor, in session order
+    private int answered = 0;
+    private int score = 0; // answers graded CORRECT or CLOSE
+
+    public QuizSession(FlashcardSet.Snapshot deck, long seed)
+    {
+        this.seed = seed;
+        setDeck(deck);
+    }
+
+    public static QuizSession shuffled(FlashcardSet.Snapshot deck)
+    {
+        long seed;
+        do
+        {
+            seed = ThreadLocalRandom.current().nextLong();
+        }
+        while(seed == 0);
+        return new QuizSession(deck, seed);
+    }
+
+    // Carries on over a newer snapshot of the same deck (cards were added, edited or removed).
+    // The cursor stays where it was, or on the last card if the deck shrank below it; a shuffled
+    // session continues in a new order, since its permutation depends on the deck size.
+    public void rebase(FlashcardSet.Snapshot newer)
+    {
+        setDeck(newer);
+        position = Math.min(position, Math.max(0, size - 1));
+    }
+
+    private void setDeck(FlashcardSet.Snapshot deck)
+    {
+        this.deck = deck;
+        this.size = deck.getSize();
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1));
+        this.half = Math.max(1, (bits + 1) / 2);
+    }
+
+    public FlashcardSet.Snapshot getDeck()
+    {
+        return deck;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getPosition()
+    {
+        return position;
+    }
+
+    public int getAnswered()
+    {
+        return answered;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public int cardIndex() // the deck index of the card at the cursor
+    {
+        return permute(position);
+    }
+
+    public QA card() // null in an empty deck
+    {
+        return size == 0 ? null : deck.question(cardIndex());
+    }
+
+    public void next()
+    {
+        if(size > 0)
+        {
+            position = (position + 1) % size;
+        }
+    }
+
+    public void previous()
+    {
+        if(size > 0)
+        {
+            position = (position - 1 + size) % size;
+        }
+    }
+
+    public void seek(int deckIndex) // moves the cursor to wherever this session shows that card
+    {
+        if(deckIndex >= 0 && deckIndex < size)
+        {
+            position = unpermute(deckIndex);
+        }
+    }
+
+    // Scores an answer to the card at the cursor and moves on; true if that finished the pass,
+    // i.e. the cursor wrapped around to the first card.
+    public boolean answer(AnswerGrader.Grade grade)
+    {
+        answered++;
+        if(grade != AnswerGrader.Grade.WRONG)
+        {
+            score++;
+        }
+        next();
+        return position == 0;
+    }
+
+    // Position -> deck index. A Feistel network is a permutation of its whole block; walking
+    // the cycle until it lands below size makes it one of [0, size). The block is less than four
+    // times the deck, so that takes a few steps at most on average.
+    int permute(int position)
+    {
+        if(seed == 0 || size < 2)
+        {
+            return position;
+        }
+
+        int x = position;
+        do
+        {
+            x = encrypt(x);
+        }
+        while(x >= size);
+        return x;
+    }
+
+    int unpermute(int index)
+    {
+        if(seed == 0 || size < 2)
+        {
+            return index;
+        }
+
+        int x = index;
+        do
+        {
+            x = decrypt(x);
+        }
+        while(x >= size);
+        return x;
+    }
+
+    private int encrypt(int x)
+    {
+        int mask = (1 << half) - 1;
+        int left = x >>> half;
+        int right = x & mask;
+        for(int r = 0; r < ROUNDS; r++)
+        {
+            int next = left ^ (round(right, r) & mask);
+            left = right;
+            right = next;
+        }
+        return (left << half) | right;
+    }
+
+    private int decrypt(int x)
+    {
+        int mask = (1 << half) - 1;
+        int left = x >>> half;
+        int right = x & mask;
+        for(int r = ROUNDS - 1; r >= 0; r--)
+        {
+            int previous = right ^ (round(left, r) & mask);
+            right = left;
+            left = previous;
+        }
+        return (left << half) | right;
+    }
+
+    private int round(int value, int r) // SplitMix64's finalizer over the seed, round and value
+    {
+        long z = seed + (r + 1) * 0x9E3779B97F4A7C15L + value * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (z ^ (z >>> 31));
+    }
+}
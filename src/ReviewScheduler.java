@@ -0,0 +1,474 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+// SM-2 spaced repetition over the cards of one deck. Every card has an ease factor, an interval
+// in days, a repetition and lapse count, and the time it is next due; an indexed min-heap on the
+// due time serves the most overdue card in O(log n) and reschedules a reviewed card in place.
+// State lives next to the deck: a snapshot ("Names.csv.review") plus an append-only log of
+// reviews since ("Names.csv.review.log") that is folded into the snapshot once it grows.
+public class ReviewScheduler
+{
+    public static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long RELEARN = 10L * 60 * 1000; // a forgotten card comes back within the session
+    private static final float START_EASE = 2.5f;
+    private static final float MIN_EASE = 1.3f;
+
+    private static final int MAGIC = 0x43524556; // "CREV"
+    private static final int VERSION = 1;
+    private static final long MIN_LOG_BYTES = 64 * 1024; // never fold a log smaller than this
+
+    private final File file; // snapshot
+    private final File log; // reviews since the snapshot
+    private DataOutputStream out; // opened on the first review
+    private long logLength;
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] terms = new String[16]; // id -> term, null once the card left the deck
+    private float[] ease = new float[16];
+    private int[] interval = new int[16]; // days
+    private int[] repetitions = new int[16]; // successful reviews in a row
+    private int[] lapses = new int[16];
+    private long[] due = new long[16]; // epoch millis
+    private int count = 0; // ids handed out
+
+    private int[] heap = new int[16]; // ids, earliest due first
+    private int[] heapIndex = new int[16]; // id -> position in heap
+    private int heapSize = 0;
+
+    private FlashcardSet syncedSet; // the deck as of the last sync, and its version then
+    private long syncedVersion = -1;
+    private boolean forgotten = false; // cards dropped since the last snapshot
+
+    private ReviewScheduler(String deckPath)
+    {
+        this.file = new File(deckPath + ".review");
+        this.log = new File(deckPath + ".review.log");
+    }
+
+    // Loads the saved review state of a deck, if any.
+    public static ReviewScheduler open(String deckPath) throws IOException
+    {
+        ReviewScheduler scheduler = new ReviewScheduler(deckPath);
+        scheduler.readSnapshot();
+        scheduler.replayLog();
+        return scheduler;
+    }
+
+    // Adds cards the scheduler has not seen yet (due now, in deck order, after anything already
+    // overdue) and forgets cards that are no longer in the deck. Does nothing if the deck has not
+    // changed since the last sync (by version, so a card swapped for another one counts too).
+    // Forgetting is saved at once, so the cards stay forgotten after a restart.
+    public void sync(FlashcardSet set, long now) throws IOException
+    {
+        FlashcardSet.Snapshot deck = set.snapshot();
+        if(set == syncedSet && deck.getVersion() == syncedVersion)
+        {
+            return;
+        }
+
+        for(int id = 0; id < count; id++)
+        {
+            if(terms[id] != null && !deck.isTerm(terms[id]))
+            {
+                forget(id);
+            }
+        }
+
+        for(int i = 0; i < deck.getSize(); i++)
+        {
+            String term = deck.getTerm(i);
+            if(!ids.containsKey(term))
+            {
+                schedule(term, START_EASE, 0, 0, 0, now);
+            }
+        }
+
+        if(forgotten)
+        {
+            save(); // the log only holds reviews, so a snapshot without the cards is what records them gone
+        }
+        syncedSet = set;
+        syncedVersion = deck.getVersion();
+    }
+
+    public int size() // cards scheduled
+    {
+        return heapSize;
+    }
+
+    // The card to review next, or null if nothing is due yet.
+    public String next(long now)
+    {
+        if(heapSize == 0 || due[heap[0]] > now)
+        {
+            return null;
+        }
+        return terms[heap[0]];
+    }
+
+    public long nextDueTime() // when the next card falls due, Long.MAX_VALUE if there are none
+    {
+        return heapSize == 0 ? Long.MAX_VALUE : due[heap[0]];
+    }
+
+    public int dueCount(long now) // walks only the due part of the heap
+    {
+        return dueCount(0, now);
+    }
+
+    private int dueCount(int at, long now)
+    {
+        if(at >= heapSize || due[heap[at]] > now)
+        {
+            return 0;
+        }
+        return 1 + dueCount(2 * at + 1, now) + dueCount(2 * at + 2, now);
+    }
+
+    // Grades a review from 0 (blackout) to 5 (perfect) and reschedules the card. Grades below 3
+    // count as forgotten: the card starts over and comes back in a few minutes.
+    public void review(String term, int quality, long now) throws IOException
+    {
+        Integer found = ids.get(term);
+        if(found == null)
+        {
+            return;
+        }
+
+        int id = found;
+        int q = Math.max(0, Math.min(5, quality));
+
+        if(q < 3)
+        {
+            repetitions[id] = 0;
+            interval[id] = 1;
+            lapses[id]++;
+            due[id] = now + RELEARN;
+        }
+
+        else
+        {
+            if(repetitions[id] == 0)
+            {
+                interval[id] = 1;
+            }
+
+            else if(repetitions[id] == 1)
+            {
+                interval[id] = 6;
+            }
+
+            else
+            {
+                interval[id] = Math.round(interval[id] * ease[id]);
+            }
+            repetitions[id]++;
+            due[id] = now + interval[id] * DAY;
+        }
+
+        ease[id] = Math.max(MIN_EASE, ease[id] + 0.1f - (5 - q) * (0.08f + (5 - q) * 0.02f));
+        reposition(id);
+        append(id);
+    }
+
+    public int getInterval(String term) // days, -1 for an unknown card
+    {
+        Integer id = ids.get(term);
+        return id == null ? -1 : interval[id];
+    }
+
+    public float getEase(String term)
+    {
+        Integer id = ids.get(term);
+        return id == null ? 0 : ease[id];
+    }
+
+    public long getDue(String term)
+    {
+        Integer id = ids.get(term);
+        return id == null ? Long.MAX_VALUE : due[id];
+    }
+
+    // Writes every card to a fresh snapshot and drops the log.
+    public void save() throws IOException
+    {
+        closeOutput();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+        {
+            snapshot.writeInt(MAGIC);
+            snapshot.writeInt(VERSION);
+            snapshot.writeInt(heapSize);
+            for(int i = 0; i < heapSize; i++)
+            {
+                writeCard(snapshot, heap[i]);
+            }
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(log.toPath());
+        logLength = 0;
+        forgotten = false;
+    }
+
+    public void close() throws IOException
+    {
+        closeOutput();
+    }
+
+    private void readSnapshot() throws IOException
+    {
+        if(!file.exists())
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException(file + " is not a review file");
+            }
+
+            int n = in.readInt();
+            for(int i = 0; i < n; i++)
+            {
+                readCard(in, file.length());
+            }
+        }
+    }
+
+    private void replayLog() throws IOException
+    {
+        if(!log.exists())
+        {
+            return;
+        }
+
+        long good = 0;
+        long total = log.length();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log))))
+        {
+            while(true)
+            {
+                try
+                {
+                    int n = in.readInt();
+                    if(n < 0 || n > total)
+                    {
+                        break;
+                    }
+
+                    byte[] record = new byte[n];
+                    in.readFully(record);
+                    if(checksum(record) != in.readInt())
+                    {
+                        break;
+                    }
+
+                    readCard(new DataInputStream(new ByteArrayInputStream(record)), n);
+                    good += 4 + n + 4;
+                }
+
+                catch (EOFException e) // torn tail
+                {
+                    break;
+                }
+            }
+        }
+
+        if(good < total)
+        {
+            try (RandomAccessFile raf = new RandomAccessFile(log, "rw"))
+            {
+                raf.setLength(good);
+            }
+        }
+        logLength = good;
+    }
+
+    private void readCard(DataInputStream in, long limit) throws IOException
+    {
+        int n = in.readInt();
+        if(n < 0 || n > limit)
+        {
+            throw new IOException("bad term length " + n);
+        }
+
+        byte[] term = new byte[n];
+        in.readFully(term);
+        schedule(new String(term, StandardCharsets.UTF_8), in.readFloat(), in.readInt(), in.readInt(), in.readInt(), in.readLong());
+    }
+
+    private void writeCard(DataOutputStream out, int id) throws IOException
+    {
+        byte[] term = terms[id].getBytes(StandardCharsets.UTF_8);
+        out.writeInt(term.length);
+        out.write(term);
+        out.writeFloat(ease[id]);
+        out.writeInt(interval[id]);
+        out.writeInt(repetitions[id]);
+        out.writeInt(lapses[id]);
+        out.writeLong(due[id]);
+    }
+
+    private void append(int id) throws IOException // one length-prefixed, checksummed card record
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeCard(new DataOutputStream(bytes), id);
+        byte[] record = bytes.toByteArray();
+
+        if(out == null)
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(log, true)));
+        }
+
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeInt(checksum(record));
+        out.flush();
+        logLength += 4 + record.length + 4;
+
+        if(logLength > Math.max(MIN_LOG_BYTES, file.length()))
+        {
+            save();
+        }
+    }
+
+    private static int checksum(byte[] record)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private void closeOutput() throws IOException
+    {
+        if(out != null)
+        {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Sets the state of a card, adding it if it is new (later records for a card replace earlier ones).
+    private void schedule(String term, float e, int days, int reps, int lapsed, long when)
+    {
+        Integer found = ids.get(term);
+        int id;
+        if(found != null)
+        {
+            id = found;
+        }
+
+        else
+        {
+            if(count == terms.length)
+            {
+                grow();
+            }
+            id = count++;
+            terms[id] = term;
+            ids.put(term, id);
+            heap[heapSize] = id;
+            heapIndex[id] = heapSize++;
+        }
+
+        ease[id] = e;
+        interval[id] = days;
+        repetitions[id] = reps;
+        lapses[id] = lapsed;
+        due[id] = when;
+        reposition(id);
+    }
+
+    private void forget(int id)
+    {
+        ids.remove(terms[id]);
+        terms[id] = null;
+        forgotten = true;
+
+        int at = heapIndex[id];
+        int last = heap[--heapSize];
+        if(last != id)
+        {
+            heap[at] = last;
+            heapIndex[last] = at;
+            reposition(last);
+        }
+    }
+
+    private void grow()
+    {
+        int n = terms.length * 2;
+        terms = Arrays.copyOf(terms, n);
+        ease = Arrays.copyOf(ease, n);
+        interval = Arrays.copyOf(interval, n);
+        repetitions = Arrays.copyOf(repetitions, n);
+        lapses = Arrays.copyOf(lapses, n);
+        due = Arrays.copyOf(due, n);
+        heap = Arrays.copyOf(heap, n);
+        heapIndex = Arrays.copyOf(heapIndex, n);
+    }
+
+    private boolean before(int a, int b) // earlier due first; ties keep the order cards were added
+    {
+        return due[a] < due[b] || (due[a] == due[b] && a < b);
+    }
+
+    private void reposition(int id) // restores the heap after the due time of id changed
+    {
+        int at = heapIndex[id];
+
+        while(at > 0 && before(id, heap[(at - 1) / 2]))
+        {
+            int parent = heap[(at - 1) / 2];
+            heap[at] = parent;
+            heapIndex[parent] = at;
+            at = (at - 1) / 2;
+        }
+
+        while(true)
+        {
+            int child = 2 * at + 1;
+            if(child >= heapSize)
+            {
+                break;
+            }
+
+            if(child + 1 < heapSize && before(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+
+            if(!before(heap[child], id))
+            {
+                break;
+            }
+            heap[at] = heap[child];
+            heapIndex[heap[at]] = at;
+            at = child;
+        }
+
+        heap[at] = id;
+        heapIndex[id] = at;
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+// Compares FlashcardSet.search (trigram index) with the linear toLowerCase() scan it replaced.
+// usage: java SearchBenchmark [cards] [queries]
+public class SearchBenchmark
+{
+    private static final String[] WORDS = {"cell", "atom", "photon", "enzyme", "vector", "matrix", "kernel",
+            "protocol", "neuron", "orbit", "tensor", "lambda", "quartz", "syntax", "binary", "galaxy"};
+
+    public static void main(String[] args) throws IOException
+    {
+        int cards = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Random random = new Random(42);
+
+        File deck = File.createTempFile("search-bench", ".csv");
+        deck.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(deck)))
+        {
+            for(int i = 0; i < cards; i++)
+            {
+                writer.write(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i
+                        + ",answer " + i + "\n");
+            }
+        }
+
+        FlashcardSet set = new FlashcardSet(deck.getPath());
+        new File(deck.getPath() + ".journal").deleteOnExit();
+        ArrayList<String> terms = new ArrayList<>();
+        for(int i = 0; i < set.getSize(); i++)
+        {
+            terms.add(set.getTerm(i));
+        }
+
+        String[] workload = new String[queries];
+        for(int i = 0; i < queries; i++)
+        {
+            String t = terms.get(random.nextInt(terms.size()));
+            int from = random.nextInt(Math.max(1, t.length() - 5));
+            workload[i] = i % 10 == 0 ? "zzq" + i : t.substring(from, Math.min(t.length(), from + 3 + random.nextInt(6))).toUpperCase();
+        }
+
+        for(int round = 0; round < 3; round++)
+        {
+            long sink = 0;
+            long start = System.nanoTime();
+            for(String q : workload)
+            {
+                String r = scan(set, terms, q);
+                sink += r == null ? 0 : r.length();
+            }
+            long scanNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(String q : workload)
+            {
+                String r = set.search(q);
+                sink -= r == null ? 0 : r.length();
+            }
+            long indexNanos = System.nanoTime() - start;
+
+            System.out.printf("%d cards, %d queries: scan %.1f us/query, index %.1f us/query (%.1fx)%s%n",
+                    terms.size(), queries, scanNanos / 1e3 / queries, indexNanos / 1e3 / queries,
+                    (double) scanNanos / indexNanos, sink == 0 ? "" : " RESULTS DIFFER");
+        }
+    }
+
+    // The search loop FlashcardSet used before the index.
+    private static String scan(FlashcardSet set, ArrayList<String> terms, String term)
+    {
+        if (set.isTerm(term))
+        {
+            return set.getInfo(term);
+        }
+        StringBuilder results = new StringBuilder();
+        for (String t : terms)
+        {
+            if (t.toLowerCase().contains(term.toLowerCase()))
+            {
+                results.append(t)
+                       .append(": ")
+                       .append(set.getInfo(t))
+                       .append("\n");
+            }
+        }
+        if (results.length() > 0)
+        {
+            return results.toString();
+        }
+        return null;
+    }
+}
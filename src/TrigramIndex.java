@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+// Case-insensitive substring index over deck terms. Every lowercase term is cut into
+// overlapping three-character grams, and each gram keeps a sorted list of term ids.
+// Queries intersect the posting lists of their own grams (rarest first) and only check
+// the few surviving candidates with contains(), instead of lowercasing the whole deck.
+// Ids belong to the caller (CardStore uses its slots); the index keeps no term text.
+public class TrigramIndex
+{
+    private final HashMap<Long, Postings> grams = new HashMap<>();
+
+    private static class Postings // ids in ascending order
+    {
+        int[] ids = new int[2];
+        int size = 0;
+
+        void add(int id)
+        {
+            if(size > 0 && ids[size - 1] == id) // same gram twice in one term
+            {
+                return;
+            }
+
+            if(size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id)
+        {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if(at >= 0)
+            {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+
+    // Ids must be added in ascending order, which keeps every posting list sorted for free.
+    public void add(int id, String term)
+    {
+        String lower = term.toLowerCase(Locale.ROOT);
+        for(int i = 0; i + 3 <= lower.length(); i++)
+        {
+            grams.computeIfAbsent(gram(lower, i), k -> new Postings()).add(id);
+        }
+    }
+
+    public void remove(int id, String term)
+    {
+        String lower = term.toLowerCase(Locale.ROOT);
+        for(int i = 0; i + 3 <= lower.length(); i++)
+        {
+            Long key = gram(lower, i);
+            Postings p = grams.get(key);
+            if(p != null)
+            {
+                p.remove(id);
+                if(p.size == 0)
+                {
+                    grams.remove(key);
+                }
+            }
+        }
+    }
+
+    public void clear()
+    {
+        grams.clear();
+    }
+
+    public long memoryBytes() // rough retained size: posting arrays plus map entry overhead
+    {
+        long bytes = 0;
+        for(Postings p : grams.values())
+        {
+            bytes += 16 + 4L * p.ids.length + 80; // array header, ids, HashMap node + Long key + Postings
+        }
+        return bytes;
+    }
+
+    // Moves every id to renumber[id]; -1 drops it. The mapping must keep the ids in order.
+    public void renumber(int[] renumber)
+    {
+        for(Postings p : grams.values())
+        {
+            int kept = 0;
+            for(int i = 0; i < p.size; i++)
+            {
+                if(p.ids[i] < renumber.length && renumber[p.ids[i]] >= 0)
+                {
+                    p.ids[kept++] = renumber[p.ids[i]];
+                }
+            }
+            p.size = kept;
+        }
+        grams.values().removeIf(p -> p.size == 0);
+    }
+
+    // Ids in [0, limit) whose term contains the query, ignoring case, ascending.
+    // termOf returns the current term of an id, or null if the id is unused.
+    public int[] search(String query, IntFunction<String> termOf, int limit)
+    {
+        String q = query.toLowerCase(Locale.ROOT);
+
+        if(q.length() < 3) // too short to have a gram: check every term in place
+        {
+            int[] found = new int[16];
+            int n = 0;
+            for(int id = 0; id < limit; id++)
+            {
+                String term = termOf.apply(id);
+                if(term != null && containsIgnoreCase(term, q))
+                {
+                    if(n == found.length)
+                    {
+                        found = Arrays.copyOf(found, n * 2);
+                    }
+                    found[n++] = id;
+                }
+            }
+            return Arrays.copyOf(found, n);
+        }
+
+        int count = q.length() - 2;
+        Postings[] lists = new Postings[count];
+        for(int i = 0; i < count; i++)
+        {
+            lists[i] = grams.get(gram(q, i));
+            if(lists[i] == null)
+            {
+                return new int[0]; // some gram never occurs, so the query cannot either
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int size = candidates.length;
+        for(int i = 1; i < count && size > 0; i++)
+        {
+            if(lists[i] != lists[i - 1])
+            {
+                size = intersect(candidates, size, lists[i]);
+            }
+        }
+
+        int kept = 0;
+        for(int i = 0; i < size; i++)
+        {
+            int id = candidates[i];
+            if(q.length() == 3 || termOf.apply(id).toLowerCase(Locale.ROOT).contains(q)) // grams matched, check they are adjacent
+            {
+                candidates[kept++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, kept);
+    }
+
+    private static boolean containsIgnoreCase(String term, String lowerQuery)
+    {
+        for(int i = 0; i + lowerQuery.length() <= term.length(); i++)
+        {
+            if(term.regionMatches(true, i, lowerQuery, 0, lowerQuery.length()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Keeps the candidates that also appear in the posting list; both are sorted.
+    private static int intersect(int[] candidates, int size, Postings postings)
+    {
+        int kept = 0;
+        int j = 0;
+        for(int i = 0; i < size && j < postings.size; i++)
+        {
+            int id = candidates[i];
+            if(postings.size - j > 8 * (size - i)) // much longer list: binary search ahead
+            {
+                int at = Arrays.binarySearch(postings.ids, j, postings.size, id);
+                j = at >= 0 ? at : -at - 1;
+            }
+
+            else
+            {
+                while(j < postings.size && postings.ids[j] < id) j++;
+            }
+
+            if(j < postings.size && postings.ids[j] == id)
+            {
+                candidates[kept++] = id;
+            }
+        }
+        return kept;
+    }
+
+    private static long gram(String s, int i) // three UTF-16 chars packed into one key
+    {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -1,4 +1,4 @@
 #!/bin/bash
 
-javac Flashcard.java FlashcardSet.java GUI.java
+javac Flashcard.java FlashcardSet.java GUI.java CLI.java
 exit 0
\ No newline at end of file